@@ -0,0 +1,56 @@
+package com.example.stockp.benchmark;
+
+import com.example.stockp.service.dto.ResponseDto;
+import com.example.stockp.service.dto.StockDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.core.DefaultLinkRelationProvider;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Data of the benchmarks, the same shapes the endpoints return.
+ */
+final class BenchmarkData {
+
+    static final String PAGE_URL = "http://localhost:8080/api/stocks?page=5&size=20&sort=id,desc";
+
+    private BenchmarkData() {
+    }
+
+    static List<StockDto> stocks(int size) {
+        List<StockDto> stocks = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            stocks.add(StockDto.builder().id((long) i).name("Stock" + i).currentPrice(1000L + i).lastUpdate(new Date()).version(0L).build());
+        }
+        return stocks;
+    }
+
+    static ResponseDto<StockDto> response(int size, boolean withLinks) {
+        ResponseDto<StockDto> responseDto = ResponseDto.<StockDto>builder().payload(stocks(size)).build();
+        if (withLinks) {
+            responseDto.add(Link.of(PAGE_URL.replace("page=5", "page=0")).withRel("first"),
+                    Link.of(PAGE_URL.replace("page=5", "page=4")).withRel("prev"),
+                    Link.of(PAGE_URL.replace("page=5", "page=6")).withRel("next"),
+                    Link.of(PAGE_URL.replace("page=5", "page=499")).withRel("last"));
+        }
+        return responseDto;
+    }
+
+    /**
+     * Jackson as the application renders application/json: the defaults of Spring and the HAL module of Spring HATEOAS for _links.
+     */
+    static ObjectMapper objectMapper() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        objectMapper.registerModule(new Jackson2HalModule());
+        objectMapper.setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(
+                new DefaultLinkRelationProvider(), CurieProvider.NONE, MessageResolver.DEFAULTS_ONLY));
+        return objectMapper;
+    }
+}
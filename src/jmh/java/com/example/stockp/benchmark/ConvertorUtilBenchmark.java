@@ -0,0 +1,36 @@
+package com.example.stockp.benchmark;
+
+import com.example.stockp.service.dto.ResponseDto;
+import com.example.stockp.service.dto.StockDto;
+import com.example.stockp.util.ConvertorUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gson parsing of a response body to ResponseDto, as the tests and clients of the API do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConvertorUtilBenchmark {
+
+    @Param({"1", "20", "100"})
+    private int size;
+
+    private String json;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        json = BenchmarkData.objectMapper().writeValueAsString(BenchmarkData.response(size, true));
+    }
+
+    @Benchmark
+    public ResponseDto<StockDto> toResponseDto() {
+        return ConvertorUtil.toResponseDto(json);
+    }
+}
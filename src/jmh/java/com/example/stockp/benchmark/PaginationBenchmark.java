@@ -0,0 +1,48 @@
+package com.example.stockp.benchmark;
+
+import com.example.stockp.service.dto.StockDto;
+import com.example.stockp.util.PaginationUtil;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.hateoas.Link;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Links of a page in the middle of the catalog. The controller builds them from the current request, so the builder is part of the cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaginationBenchmark {
+
+    private Page<StockDto> page;
+
+    private Slice<StockDto> slice;
+
+    @Setup
+    public void setUp() {
+        List<StockDto> stocks = BenchmarkData.stocks(20);
+        page = new PageImpl<>(stocks, PageRequest.of(5, 20), 10_000);
+        slice = new SliceImpl<>(stocks, PageRequest.of(5, 20), true);
+    }
+
+    @Benchmark
+    public List<Link> generatePaginationList() {
+        return PaginationUtil.generatePaginationList(UriComponentsBuilder.fromHttpUrl(BenchmarkData.PAGE_URL), page);
+    }
+
+    @Benchmark
+    public List<Link> generateSlicePaginationList() {
+        return PaginationUtil.generateSlicePaginationList(UriComponentsBuilder.fromHttpUrl(BenchmarkData.PAGE_URL), slice);
+    }
+}
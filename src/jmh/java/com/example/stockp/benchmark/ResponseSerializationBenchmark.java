@@ -0,0 +1,47 @@
+package com.example.stockp.benchmark;
+
+import com.example.stockp.service.dto.ResponseDto;
+import com.example.stockp.service.dto.StockDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of a page of GET /api/stocks, with the pagination links of HATEOAS and without them (hateoas.disabled).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    @Param({"1", "20", "100"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+
+    private ResponseDto<StockDto> withLinks;
+
+    private ResponseDto<StockDto> withoutLinks;
+
+    @Setup
+    public void setUp() {
+        objectMapper = BenchmarkData.objectMapper();
+        withLinks = BenchmarkData.response(size, true);
+        withoutLinks = BenchmarkData.response(size, false);
+    }
+
+    @Benchmark
+    public byte[] withLinks() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(withLinks);
+    }
+
+    @Benchmark
+    public byte[] withoutLinks() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(withoutLinks);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.stockp.benchmark;
+
+import com.example.stockp.entity.Stock;
+import com.example.stockp.service.dto.StockDto;
+import com.example.stockp.service.mapper.StockMapper;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MapStruct mapping of every read (toDto) and of PATCH (partialUpdate).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StockMapperBenchmark {
+
+    private final StockMapper stockMapper = Mappers.getMapper(StockMapper.class);
+
+    private Stock stock;
+
+    private StockDto patch;
+
+    @Setup
+    public void setUp() {
+        stock = new Stock("Stock1", 1000L);
+        stock.setId(1L);
+        stock.setVersion(3L);
+        stock.setLastUpdate(new Date());
+        patch = StockDto.builder().id(1L).currentPrice(1001L).build();
+    }
+
+    @Benchmark
+    public StockDto toDto() {
+        return stockMapper.toDto(stock);
+    }
+
+    @Benchmark
+    public Stock partialUpdate() {
+        stockMapper.partialUpdate(stock, patch);
+        return stock;
+    }
+}
@@ -1,16 +1,23 @@
 package com.example.stockp.bootstrap;
 
 
-import com.example.stockp.entity.Stock;
-import com.example.stockp.repository.StockRepository;
+import com.example.stockp.service.StockImportService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
-import java.util.List;
 
+/**
+ * Imports the stocks of import.path on start-up, by default the sample stocks of classpath:data/stocks.csv.
+ * It can be a large file as well (file:/data/catalog.csv), it is read as a stream. Leave import.path empty to start without stocks.
+ */
 @Configuration
 //@Profile("!prod")
 @Slf4j
@@ -18,30 +25,36 @@ public class DataLoader implements CommandLineRunner {
 
     private final Environment environment;
 
+    private final StockImportService stockImportService;
 
-    private final StockRepository repository;
+    private final ResourceLoader resourceLoader;
 
-    private final List<Stock> list = List.of(
-            new Stock("Stock1", 1L)
-            , new Stock("Stock2", 2L)
-            , new Stock("Stock3", 3L)
-            , new Stock("Stock4", 4L)
-    );
+    private final String path;
 
-    public DataLoader(Environment environment, StockRepository stockRepository) {
+    public DataLoader(Environment environment, StockImportService stockImportService, ResourceLoader resourceLoader,
+                      @Value("${import.path}") String path) {
         this.environment = environment;
-        this.repository = stockRepository;
+        this.stockImportService = stockImportService;
+        this.resourceLoader = resourceLoader;
+        this.path = path;
     }
 
     @Override
-    public void run(String... args) {
+    public void run(String... args) throws IOException {
         log.info("#data is loading.....");
         loadData();
         log.info("#Currently active profile - " + Arrays.toString(environment.getActiveProfiles()));
 
     }
 
-    public void loadData() {
-        repository.saveAll(list);
+    public void loadData() throws IOException {
+        if (path.isBlank()) {
+            log.info("#import.path is empty, no stock is loaded");
+            return;
+        }
+        Resource resource = resourceLoader.getResource(path);
+        try (InputStream in = resource.getInputStream()) {
+            stockImportService.importStocks(in, StockImportService.Format.of(resource.getFilename()));
+        }
     }
 }
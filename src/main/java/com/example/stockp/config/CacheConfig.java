@@ -0,0 +1,65 @@
+package com.example.stockp.config;
+
+import com.example.stockp.entity.Stock;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Hibernate second level cache. Every region is bounded by size and time to live.
+ * Regions are created here, hibernate is configured to fail on a missing region instead of creating an unbounded one.
+ * Statistics are enabled, so hit/miss/eviction of each region is published by actuator as cache.* metrics.
+ * Every application context has its own cache manager, contexts in one JVM (e.g. tests) do not see entities of each other.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String STOCK_REGION = Stock.class.getName();
+    public static final String STOCK_NATURAL_ID_REGION = STOCK_REGION + "##NaturalId";
+
+    private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
+
+    public CacheConfig(@Value("${cache.stock.max-entries}") long maxEntries,
+                       @Value("${cache.stock.time-to-live-seconds}") long timeToLiveSeconds) {
+        this.jcacheConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+                CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(maxEntries))
+                        .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(timeToLiveSeconds)))
+                        .build());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernatePropertiesCustomizer(CacheManager cacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    }
+
+    @Bean(destroyMethod = "close")
+    public CacheManager jCacheCacheManager() {
+        EhcacheCachingProvider cachingProvider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        CacheManager cacheManager = cachingProvider.getCacheManager(URI.create("urn:stockp:" + UUID.randomUUID()),
+                new DefaultConfiguration(getClass().getClassLoader()));
+        createCache(cacheManager, STOCK_REGION);
+        createCache(cacheManager, STOCK_NATURAL_ID_REGION);
+        return cacheManager;
+    }
+
+    private void createCache(CacheManager cacheManager, String cacheName) {
+        cacheManager.createCache(cacheName, jcacheConfiguration);
+        cacheManager.enableStatistics(cacheName, true);
+    }
+}
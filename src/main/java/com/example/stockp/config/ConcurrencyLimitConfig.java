@@ -0,0 +1,41 @@
+package com.example.stockp.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive concurrency limit of the stock API (/api/stocks), so a slow database sheds load with 503 instead of piling up
+ * tomcat threads behind the pool of connections. Admin and actuator requests are not limited. It is enabled in the prod profile.
+ */
+@Configuration
+@ConditionalOnProperty(name = "concurrency-limit.enabled", havingValue = "true")
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public ConcurrencyLimiter concurrencyLimiter(@Value("${concurrency-limit.initial-limit}") int initialLimit,
+                                                 @Value("${concurrency-limit.min-limit}") int minLimit,
+                                                 @Value("${concurrency-limit.max-limit}") int maxLimit,
+                                                 @Value("${concurrency-limit.backoff-ratio}") double backoffRatio,
+                                                 @Value("${concurrency-limit.latency-threshold-ms}") long latencyThresholdMs) {
+        return new ConcurrencyLimiter(initialLimit, minLimit, maxLimit, backoffRatio, TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs));
+    }
+
+    /**
+     * Just after the filter of http.server.requests, so a rejection is recorded by it and costs nothing else.
+     */
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(ConcurrencyLimiter concurrencyLimiter, ObjectMapper objectMapper) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(concurrencyLimiter, objectMapper));
+        registration.addUrlPatterns("/api/stocks", "/api/stocks/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.stockp.config;
+
+import com.example.stockp.exception.globalhandler.GlobalExceptionHandler;
+import com.example.stockp.service.dto.ResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Admits a request by the {@link ConcurrencyLimiter}, over the limit it is rejected at once with 503, error_code 5031 and Retry-After,
+ * before it takes a thread of the database pool. The latency of an admitted request and a 503 of it (e.g. no free connection) feed the limit.
+ * A stream, an export and the catalog are not admitted by it: they are long by design, or served from memory.
+ * The latency of a bulk request (batch, multi-get) grows with its size, so only its 503 feeds the limit, the one threshold fits single stocks.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    public static final int ERROR_CODE = 5031;
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private static final Set<String> UNLIMITED_PATHS = Set.of("/api/stocks/stream", "/api/stocks/export", "/api/stocks/catalog");
+
+    private static final Set<String> BULK_PATHS = Set.of("/api/stocks/batch", "/api/stocks/by-ids");
+
+    private final Logger log = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    private final ConcurrencyLimiter limiter;
+
+    private final ObjectMapper objectMapper;
+
+    public ConcurrencyLimitFilter(ConcurrencyLimiter limiter, ObjectMapper objectMapper) {
+        this.limiter = limiter;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!limiter.tryAcquire()) {
+            reject(request, response);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        boolean overloaded = true; // an exception out of the chain counts as a drop
+        try {
+            filterChain.doFilter(request, response);
+            overloaded = response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value();
+        } finally {
+            limiter.release(startNanos, overloaded, !isBulk(request));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return UNLIMITED_PATHS.contains(pathOf(request));
+    }
+
+    private static boolean isBulk(HttpServletRequest request) {
+        return BULK_PATHS.contains(pathOf(request)) || ("GET".equals(request.getMethod()) && request.getParameter("ids") != null);
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.debug("#Request is rejected by the concurrency limit. limit: {}, uri: {}", limiter.getLimit(), request.getRequestURI());
+        request.setAttribute(GlobalExceptionHandler.ERROR_CODE_ATTRIBUTE, ERROR_CODE); // it tags http.server.requests
+        ResponseDto<Void> responseDto = ResponseDto.<Void>builder().errorCode(ERROR_CODE)
+                .message("#Too many concurrent requests! Retry later.").build();
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), responseDto);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.stockp.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive limit of concurrent requests by AIMD, like the congestion window of TCP. A request is admitted while fewer than limit requests run.
+ * A request slower than the latency threshold, or one that ended overloaded (503), is a drop: the limit is multiplied by the backoff ratio,
+ * once per window, so requests that started before a decrease do not decrease it again. Otherwise, if at least half of the limit was in use,
+ * the limit grows by 1 / limit, about one per limit requests. The limit stays between min and max limit.
+ * Published as http.server.concurrency.limit, http.server.concurrency.in.flight and http.server.concurrency.rejections.
+ */
+public class ConcurrencyLimiter implements MeterBinder {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double backoffRatio;
+
+    private final long latencyThresholdNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong rejections = new AtomicLong();
+
+    private double limit; // guarded by this
+
+    private long lastDecreaseNanos; // guarded by this
+
+    private volatile int admitted; // the limit rounded down, read without a lock
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long latencyThresholdNanos) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must be 1 <= min <= initial <= max! min: " + minLimit + " initial: " + initialLimit + " max: " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.limit = initialLimit;
+        this.admitted = initialLimit;
+        this.lastDecreaseNanos = System.nanoTime() - Long.MAX_VALUE / 2;
+    }
+
+    /**
+     * @return false if the limit is reached, the request must be rejected. Otherwise it must be released.
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= admitted) {
+                rejections.incrementAndGet();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * @param startNanos System.nanoTime() when the request was admitted
+     * @param overloaded the request ended by an overload of a dependency, e.g. no connection of the database was free
+     * @param timed its latency is a sample of the limit. A bulk request is slow by its size, not by the load, only its overload is a sample
+     */
+    public void release(long startNanos, boolean overloaded, boolean timed) {
+        int inFlightOfRequest = inFlight.getAndDecrement();
+        if (!timed && !overloaded) return;
+        long nowNanos = System.nanoTime();
+        onSample(startNanos, nowNanos, overloaded || nowNanos - startNanos > latencyThresholdNanos, inFlightOfRequest);
+    }
+
+    public int getLimit() {
+        return admitted;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("http.server.concurrency.limit", this, ConcurrencyLimiter::getLimit)
+                .description("Adaptive limit of concurrent requests of the stock API").register(registry);
+        Gauge.builder("http.server.concurrency.in.flight", this, ConcurrencyLimiter::getInFlight)
+                .description("Running requests of the stock API").register(registry);
+        FunctionCounter.builder("http.server.concurrency.rejections", this, ConcurrencyLimiter::getRejections)
+                .description("Requests rejected with 503 over the limit").register(registry);
+    }
+
+    private synchronized void onSample(long startNanos, long nowNanos, boolean drop, int inFlightOfRequest) {
+        if (drop) {
+            if (startNanos - lastDecreaseNanos < 0) return; // it started before the last decrease, that decrease is its window
+            limit = Math.max(minLimit, limit * backoffRatio);
+            lastDecreaseNanos = nowNanos;
+        } else if (inFlightOfRequest * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        admitted = (int) limit;
+    }
+}
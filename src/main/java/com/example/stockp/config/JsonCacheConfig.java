@@ -0,0 +1,97 @@
+package com.example.stockp.config;
+
+import com.example.stockp.service.dto.StockDto;
+import com.example.stockp.service.impl.StockJsonCache;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializes a StockDto once per version: its JSON is kept by {@link StockJsonCache} and copied as raw bytes into the envelope of
+ * every response (a stock, a page) and into the export and the catalog. The JSON is made by the serializer of jackson itself,
+ * so it is the same as without the cache. A stock without an id, a view or a pretty printed response is not cached.
+ */
+@Configuration
+public class JsonCacheConfig {
+
+    @Bean
+    public Module stockJsonCacheModule(StockJsonCache stockJsonCache) {
+        SimpleModule module = new SimpleModule("stock-json-cache");
+        module.setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription beanDesc, JsonSerializer<?> serializer) {
+                if (beanDesc.getBeanClass() != StockDto.class) return serializer;
+                return new CachedStockDtoSerializer((JsonSerializer<Object>) serializer, stockJsonCache);
+            }
+        });
+        return module;
+    }
+
+    static class CachedStockDtoSerializer extends StdSerializer<StockDto> implements ResolvableSerializer, ContextualSerializer {
+
+        private final JsonSerializer<Object> delegate;
+
+        private final StockJsonCache stockJsonCache;
+
+        CachedStockDtoSerializer(JsonSerializer<Object> delegate, StockJsonCache stockJsonCache) {
+            super(StockDto.class);
+            this.delegate = delegate;
+            this.stockJsonCache = stockJsonCache;
+        }
+
+        @Override
+        public void serialize(StockDto value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            ObjectCodec codec = gen.getCodec();
+            if (value.getId() == null || provider.getActiveView() != null
+                    || gen.getPrettyPrinter() != null || codec == null) {
+                delegate.serialize(value, gen, provider);
+                return;
+            }
+            SerializableString json = stockJsonCache.get(value);
+            if (json == null) {
+                ByteArrayBuilder bytes = new ByteArrayBuilder();
+                try (JsonGenerator fragment = codec.getFactory().createGenerator(bytes, JsonEncoding.UTF8)) {
+                    delegate.serialize(value, fragment, provider);
+                }
+                json = new SerializedString(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+                json.asUnquotedUTF8(); // encoded once, before it is shared
+                stockJsonCache.put(value, json);
+            }
+            gen.writeRawValue(json);
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider) throws JsonMappingException {
+            if (delegate instanceof ResolvableSerializer) ((ResolvableSerializer) delegate).resolve(provider);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property) throws JsonMappingException {
+            if (!(delegate instanceof ContextualSerializer)) return this;
+            JsonSerializer<?> contextual = ((ContextualSerializer) delegate).createContextual(provider, property);
+            return contextual == delegate ? this : new CachedStockDtoSerializer((JsonSerializer<Object>) contextual, stockJsonCache);
+        }
+    }
+}
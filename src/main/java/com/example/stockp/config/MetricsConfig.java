@@ -0,0 +1,43 @@
+package com.example.stockp.config;
+
+import com.example.stockp.exception.globalhandler.GlobalExceptionHandler;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsContributor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Latency of every layer of a request, exposed at /actuator/prometheus:
+ * http.server.requests (endpoints, timed by spring boot), service.invocations (services, timed by {@link ServiceMetricsAspect})
+ * and spring.data.repository.invocations (repositories, timed by spring boot).
+ * Percentile histograms and SLO buckets of them are configured in management.metrics.distribution.
+ */
+@Configuration
+public class MetricsConfig {
+
+    public static final String ERROR_CODE_TAG = "error_code";
+    public static final String NONE = "none";
+
+    /**
+     * Adds the error code of the response, set by {@link GlobalExceptionHandler}, to http.server.requests.
+     */
+    @Bean
+    public WebMvcTagsContributor errorCodeTagsContributor() {
+        return new WebMvcTagsContributor() {
+            @Override
+            public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler, Throwable exception) {
+                Object errorCode = request.getAttribute(GlobalExceptionHandler.ERROR_CODE_ATTRIBUTE);
+                return Tags.of(ERROR_CODE_TAG, errorCode == null ? NONE : errorCode.toString());
+            }
+
+            @Override
+            public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+                return Tags.empty();
+            }
+        };
+    }
+}
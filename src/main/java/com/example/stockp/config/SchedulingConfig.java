@@ -0,0 +1,12 @@
+package com.example.stockp.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs, like reconciling the stock counter.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,51 @@
+package com.example.stockp.config;
+
+import com.example.stockp.exception.AbstractThrowable;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every method of the service interfaces as service.invocations, tagged by service, method, outcome (SUCCESS or ERROR),
+ * exception and the error code of an {@link AbstractThrowable}. It is the outermost advice, so the commit of the transaction is included.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServiceMetricsAspect {
+
+    public static final String METRIC_NAME = "service.invocations";
+
+    private final MeterRegistry meterRegistry;
+
+    public ServiceMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * com.example.stockp.service.*Service.*(..)) && within(com.example.stockp.service.impl..*)")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Throwable error = null;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable ex) {
+            error = ex;
+            throw ex;
+        } finally {
+            sample.stop(Timer.builder(METRIC_NAME)
+                    .description("Latency of the methods of services")
+                    .tag("service", joinPoint.getSignature().getDeclaringType().getSimpleName())
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("outcome", error == null ? "SUCCESS" : "ERROR")
+                    .tag("exception", error == null ? MetricsConfig.NONE : error.getClass().getSimpleName())
+                    .tag(MetricsConfig.ERROR_CODE_TAG, error instanceof AbstractThrowable
+                            ? String.valueOf(((AbstractThrowable) error).getErrorCode()) : MetricsConfig.NONE)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.stockp.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Counting of the SQL statements of every request, a query more than expected on an endpoint is visible in a response or a metric.
+ */
+@Configuration
+public class SqlStatementCountConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementCounter());
+    }
+
+    @Bean
+    public SqlStatementCountFilter sqlStatementCountFilter(MeterRegistry meterRegistry,
+                                                           @Value("${sql-count.header-enabled}") boolean headerEnabled) {
+        return new SqlStatementCountFilter(meterRegistry, headerEnabled);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.stockp.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Counts the SQL statements of a request. The counts are recorded as the sql.statements summary, tagged by uri, method and type.
+ * It is not named under http.server.requests, so it does not inherit the percentile histogram of that timer, only a few buckets of its own.
+ * A jdbc batch is prepared once, so it counts as one statement whatever the number of its rows, in the header too.
+ * With sql-count.header-enabled they are also sent in the X-Sql-Statements header, it is added just before the body is written,
+ * so the statements of a request whose response is written while it runs (an export) are the ones issued before its first byte.
+ */
+public class SqlStatementCountFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Sql-Statements";
+    public static final String METRIC_NAME = "sql.statements";
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean headerEnabled;
+
+    public SqlStatementCountFilter(MeterRegistry meterRegistry, boolean headerEnabled) {
+        this.meterRegistry = meterRegistry;
+        this.headerEnabled = headerEnabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlStatementCounter.Counts counts = SqlStatementCounter.start();
+        HttpServletResponse countedResponse = headerEnabled ? new HeaderResponse(response, counts) : response;
+        try {
+            filterChain.doFilter(request, countedResponse);
+        } finally {
+            SqlStatementCounter.stop();
+            if (headerEnabled) ((HeaderResponse) countedResponse).addHeader();
+            record(request, counts);
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlStatementCounter.Counts counts) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        for (SqlStatementCounter.Type type : SqlStatementCounter.Type.values()) {
+            DistributionSummary.builder(METRIC_NAME)
+                    .description("SQL statements of a request")
+                    .baseUnit("statements")
+                    .tag("uri", uri)
+                    .tag("method", request.getMethod())
+                    .tag("type", type.tagValue())
+                    .register(meterRegistry)
+                    .record(counts.get(type));
+        }
+    }
+
+    /**
+     * Adds the header once, before the response is committed.
+     */
+    private static class HeaderResponse extends HttpServletResponseWrapper {
+        private final SqlStatementCounter.Counts counts;
+        private boolean added;
+
+        HeaderResponse(HttpServletResponse response, SqlStatementCounter.Counts counts) {
+            super(response);
+            this.counts = counts;
+        }
+
+        void addHeader() {
+            if (added || isCommitted()) return;
+            added = true;
+            setHeader(HEADER, counts.toString());
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addHeader();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addHeader();
+            super.sendError(sc);
+        }
+    }
+}
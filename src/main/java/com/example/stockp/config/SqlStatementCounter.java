@@ -0,0 +1,82 @@
+package com.example.stockp.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Locale;
+
+/**
+ * Counts the SQL statements hibernate prepares on the current thread, by type. Counting is started and stopped by the caller,
+ * e.g. {@link SqlStatementCountFilter} for a request. A jdbc batch is prepared once, so it is counted as one statement.
+ * Statements of other threads (workers of an export, flushes of ticks) are not counted.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<Counts> COUNTS = new ThreadLocal<>();
+
+    public static Counts start() {
+        Counts counts = new Counts();
+        COUNTS.set(counts);
+        return counts;
+    }
+
+    public static void stop() {
+        COUNTS.remove();
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Counts counts = COUNTS.get();
+        if (counts != null) counts.add(Type.of(sql));
+        return sql;
+    }
+
+    public enum Type {
+        SELECT, INSERT, UPDATE, DELETE, OTHER;
+
+        static Type of(String sql) {
+            String statement = sql.stripLeading().toLowerCase(Locale.ROOT);
+            for (Type type : values()) {
+                if (statement.startsWith(type.tagValue())) return type;
+            }
+            return OTHER;
+        }
+
+        public String tagValue() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Statements of one unit of work. It is written by its thread and may be read by another one, e.g. when an async response is committed.
+     */
+    public static class Counts {
+        private final long[] byType = new long[Type.values().length];
+
+        void add(Type type) {
+            byType[type.ordinal()]++;
+        }
+
+        public long get(Type type) {
+            return byType[type.ordinal()];
+        }
+
+        public long total() {
+            long total = 0;
+            for (long count : byType) total += count;
+            return total;
+        }
+
+        /**
+         * e.g. select=1,insert=0,update=1,delete=0,other=0
+         */
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (Type type : Type.values()) {
+                if (builder.length() > 0) builder.append(',');
+                builder.append(type.tagValue()).append('=').append(get(type));
+            }
+            return builder.toString();
+        }
+    }
+}
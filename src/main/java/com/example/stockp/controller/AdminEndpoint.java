@@ -0,0 +1,27 @@
+package com.example.stockp.controller;
+
+import com.example.stockp.service.dto.ImportResultDto;
+import com.example.stockp.service.dto.ResponseDto;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.http.ResponseEntity;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+public interface AdminEndpoint {
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The file is imported. The payload has the counts, rows/sec and the first rejected rows"),
+            @ApiResponse(responseCode = "400", description = "If the content type is not csv or json, or the file is malformed",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
+    })
+    @Operation(summary = "Import stocks from the body: a CSV with a header (text/csv), a JSON array (application/json) or a stock per line (application/x-ndjson). " +
+            "The body is read as a stream and written in batched transactions, an invalid row or an existing name does not abort the import")
+    ResponseEntity<ResponseDto<ImportResultDto>> importStocks(
+            @Parameter(hidden = true) HttpServletRequest request) throws IOException;
+}
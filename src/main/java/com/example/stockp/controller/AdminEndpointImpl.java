@@ -0,0 +1,46 @@
+package com.example.stockp.controller;
+
+import com.example.stockp.service.StockImportService;
+import com.example.stockp.service.dto.ImportResultDto;
+import com.example.stockp.service.dto.ResponseDto;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * REST controller for the administration of Stocks.
+ */
+@RestController
+@RequestMapping("/api/admin")
+@Tag(name = "admin-controller for handling administration of stocks", description = "import provided")
+@Slf4j
+public class AdminEndpointImpl implements AdminEndpoint {
+
+    private final StockImportService stockImportService;
+
+    public AdminEndpointImpl(StockImportService stockImportService) {
+        this.stockImportService = stockImportService;
+    }
+
+    /**
+     * The body is not bound to an object, it is read from the input stream of the request as it arrives.
+     */
+    @Override
+    @PostMapping(value = "/stocks/import", consumes = {"text/csv", MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseDto<ImportResultDto>> importStocks(HttpServletRequest request) throws IOException {
+        log.debug("REST request to import Stocks. content type: {}", request.getContentType());
+        StockImportService.Format format = StockImportService.Format.of(MediaType.parseMediaType(request.getContentType()).getSubtype());
+        ImportResultDto result = stockImportService.importStocks(request.getInputStream(), format);
+        ResponseDto<ImportResultDto> responseDto = ResponseDto.<ImportResultDto>builder().payload(List.of(result)).build();
+        return ResponseEntity.ok(responseDto);
+    }
+}
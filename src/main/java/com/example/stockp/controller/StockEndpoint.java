@@ -1,7 +1,11 @@
 package com.example.stockp.controller;
 
+import com.example.stockp.service.dto.BatchResultDto;
+import com.example.stockp.service.dto.PricePointDto;
 import com.example.stockp.service.dto.ResponseDto;
 import com.example.stockp.service.dto.StockDto;
+import com.example.stockp.service.dto.StockMatchDto;
+import com.example.stockp.service.dto.TickDto;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -9,13 +13,20 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springdoc.api.annotations.ParameterObject;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.net.URISyntaxException;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
 
 /**
  * @author Mahdi Sharifi
@@ -25,16 +36,87 @@ public interface StockEndpoint {
 
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Return list od stocks successfully"),
+            @ApiResponse(responseCode = "304", description = "If If-None-Match has the ETag of the page, no stock of it is changed"),
             @ApiResponse(responseCode = "400", description = "If the request is not valid. For more information read the message of the error",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))}),
             @ApiResponse(responseCode = "500", description = "if the stock couldn't be partial updated.",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
     })
-    @Operation(summary = "Find all stocks. The pagination provided by size and page.")
-    ResponseEntity<ResponseDto<StockDto>> getAllStocks(@ParameterObject Pageable pageable) throws URISyntaxException;
+    @Operation(summary = "Find all stocks. The pagination provided by size and page. " +
+            "The total comes from an in memory counter, pass total=false to get a page without total headers and last link.")
+    ResponseEntity<ResponseDto<StockDto>> getAllStocks(
+            @ParameterObject Pageable pageable,
+            @Parameter(description = "If false, X-Total-Count, X-Page-Total and the last link are not provided.", example = "true") boolean total,
+            @Parameter(hidden = true) WebRequest webRequest)
+            throws URISyntaxException;
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Return a page of stocks successfully. The next link has the cursor of the next page"),
+            @ApiResponse(responseCode = "400", description = "If the cursor, order, direction or size is not valid",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
+    })
+    @Operation(summary = "Find all stocks by keyset (cursor) pagination. It seeks the index instead of scanning an OFFSET, " +
+            "pass an empty after for the first page then follow the next link.")
+    ResponseEntity<ResponseDto<StockDto>> getAllStocksAfter(
+            @Parameter(description = "The opaque cursor of the next page. Empty for the first page.", required = true) String after,
+            @Parameter(description = "Number of stocks of the page.", example = "20") int size,
+            @Parameter(description = "Order of the first page: id, current_price or last_update. id breaks the tie.", example = "id") String order,
+            @Parameter(description = "Direction of the first page: asc or desc.", example = "asc") String direction);
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The stocks in the order of ids. A missing stock is left out of payload, " +
+                    "its id is a key of errors"),
+            @ApiResponse(responseCode = "400", description = "If ids is empty, it has a null or more ids than multi-get.max-ids",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
+    })
+    @Operation(summary = "Find many stocks by id in one request. Stocks of the cache are not read again, " +
+            "the others are read by IN queries. A missing stock does not fail the request")
+    ResponseEntity<ResponseDto<StockDto>> getStocksByIds(
+            @Parameter(description = "Ids of the stocks, comma separated.", required = true, example = "1,2,3") List<Long> ids);
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The stocks in the order of ids. A missing stock is left out of payload, " +
+                    "its id is a key of errors"),
+            @ApiResponse(responseCode = "400", description = "If ids is empty, it has a null or more ids than multi-get.max-ids",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
+    })
+    @Operation(summary = "Find many stocks by id, the same as GET /api/stocks?ids= for a list of ids too long for a URL")
+    ResponseEntity<ResponseDto<StockDto>> getStocksByIdsOfBody(
+            @Parameter(description = "Ids of the stocks as a JSON array.", required = true) @RequestBody List<Long> ids);
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream all stocks, one line per stock"),
+            @ApiResponse(responseCode = "400", description = "If the format is not ndjson or csv",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
+    })
+    @Operation(summary = "Export all stocks as NDJSON or CSV. The stocks are streamed from a database cursor as they are read, " +
+            "with more than one worker the id range is split between them and the lines come in no particular order")
+    ResponseEntity<StreamingResponseBody> exportStocks(
+            @Parameter(description = "ndjson or csv.", example = "ndjson") String format,
+            @Parameter(description = "Number of workers that read id ranges in parallel, at most export.max-workers.", example = "1") int workers);
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "All stocks as NDJSON, one line per stock in order of id. " +
+                    "Compressed by gzip (Content-Encoding: gzip) if Accept-Encoding has gzip"),
+            @ApiResponse(responseCode = "304", description = "If If-None-Match has the ETag of the catalog, no stock is changed")
+    })
+    @Operation(summary = "Get the catalog of all stocks for bulk consumers. It is a snapshot compressed once and sent as it is, " +
+            "it is made again after a stock is changed or when it is older than catalog.max-age-ms")
+    ResponseEntity<Resource> getCatalog(@Parameter(hidden = true) WebRequest webRequest);
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "A stream of Server-Sent Events: a stock event with the StockDto, or a delete event with the id"),
+            @ApiResponse(responseCode = "400", description = "If ids is empty or it has more stocks than stream.max-ids",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
+    })
+    @Operation(summary = "Stream the stocks by Server-Sent Events. The current state of every existing stock is sent first, " +
+            "then every committed change of them. A slow client gets the latest state of each stock (conflate) or loses the oldest events (drop)")
+    SseEmitter streamStocks(
+            @Parameter(description = "Ids of the stocks, comma separated.", required = true, example = "1,2,3") Set<Long> ids);
 
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Find the stock successfully"),
+            @ApiResponse(responseCode = "304", description = "If If-None-Match has the ETag of the stock, it is not changed"),
             @ApiResponse(responseCode = "400", description = "If the request is not valid. For more information read the message of the error",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))}),
             @ApiResponse(responseCode = "404", description = "if the stock is not found.",
@@ -43,7 +125,38 @@ public interface StockEndpoint {
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
     })
     @Operation(summary = "Find a stock by id")
-    ResponseEntity<ResponseDto<StockDto>> getStock(@PathVariable Long id) throws URISyntaxException;
+    ResponseEntity<ResponseDto<StockDto>> getStock(@PathVariable Long id, @Parameter(hidden = true) WebRequest webRequest) throws URISyntaxException;
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The matches, an empty payload if no name matches"),
+            @ApiResponse(responseCode = "400", description = "If q is blank or too long, or limit is not between 1 and search.max-results",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
+    })
+    @Operation(summary = "Search stocks by name for autocomplete. Names that start with q come first in order of name, " +
+            "then names similar to q (typos) by similarity. It is served by an in memory index, the database is not touched")
+    ResponseEntity<ResponseDto<StockMatchDto>> searchStocks(
+            @Parameter(description = "The query, case insensitive.", required = true, example = "stoc") String q,
+            @Parameter(description = "Max number of matches.", example = "10") int limit);
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Find the stock successfully"),
+            @ApiResponse(responseCode = "404", description = "if there is no stock with the name.",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
+    })
+    @Operation(summary = "Find a stock by its exact name. The id is found by an in memory name index, then the stock is read by id from the cache")
+    ResponseEntity<ResponseDto<StockDto>> getStockByName(
+            @Parameter(description = "The exact name of the stock, URL encoded.", required = true, example = "Stock1") @PathVariable String name);
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Return the prices of the stock in order of time. Empty if there is no price in the range"),
+            @ApiResponse(responseCode = "400", description = "If from is after to, or a date is not in ISO format",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
+    })
+    @Operation(summary = "Find the price history of a stock by id. It is read from the history segments, not the database")
+    ResponseEntity<ResponseDto<PricePointDto>> getStockHistory(
+            @PathVariable Long id,
+            @Parameter(description = "Start of the range in ISO format. The beginning of the history if it is empty.", example = "2022-10-06T10:00:00Z") Date from,
+            @Parameter(description = "End of the range in ISO format. Now if it is empty.", example = "2022-10-07T10:00:00Z") Date to);
 
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Created successfully"),
@@ -61,29 +174,85 @@ public interface StockEndpoint {
             @Valid @RequestBody StockDto stockDTO) throws URISyntaxException;//if the Location URI syntax is incorrect.
 
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Updated success"),
+            @ApiResponse(responseCode = "200", description = "The batch is processed. The error_code of each item of payload shows the stock is created (0) or not"),
+            @ApiResponse(responseCode = "400", description = "If the batch is empty or it has more stocks than the max items of a batch",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))}),
+            @ApiResponse(responseCode = "500", description = "if the stocks couldn't be created.",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
+    })
+    @Operation(summary = "Create a batch of new stocks. The dtos must not have an id. " +
+            "An invalid or duplicate stock does not abort the batch, the result of every stock is reported in the order of the request")
+    ResponseEntity<ResponseDto<BatchResultDto>> createStocks(
+            @Parameter(description = "The stockDtos that you want to create them.", required = true)
+            @RequestBody List<StockDto> stockDtos);
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The batch is processed. The error_code of each item of payload shows the stock is updated (0) or not"),
+            @ApiResponse(responseCode = "400", description = "If the batch is empty or it has more stocks than the max items of a batch",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
+    })
+    @Operation(summary = "Partially update a batch of stocks in one transaction. Every dto must have an id, just its given fields are written. " +
+            "A missing, invalid or conflicting stock does not abort the batch, the result of every stock is reported in the order of the request")
+    ResponseEntity<ResponseDto<BatchResultDto>> partialUpdateStocks(
+            @Parameter(description = "The stockDtos that you want to update them.", required = true)
+            @RequestBody List<StockDto> stockDtos);
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The batch is processed. The error_code of each item of payload shows the stock is deleted (0) or not"),
+            @ApiResponse(responseCode = "400", description = "If the batch is empty or it has more ids than the max items of a batch",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
+    })
+    @Operation(summary = "Delete a batch of stocks in one transaction. A missing stock does not abort the batch, " +
+            "the result of every id is reported in the order of the request")
+    ResponseEntity<ResponseDto<BatchResultDto>> deleteStocks(
+            @Parameter(description = "Ids of the stocks as a JSON array.", required = true) @RequestBody List<Long> ids);
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "The ticks are accepted. They are written to the stocks by the next flush"),
+            @ApiResponse(responseCode = "400", description = "If the ticks are empty, too many, or a tick has no id, name or price",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))}),
+            @ApiResponse(responseCode = "429", description = "If the buffer of ticks is full. Retry later, a tick sent twice is harmless",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
+    })
+    @Operation(summary = "Ingest price ticks of stocks in bulk. Only the latest tick (by timestamp) of each stock is written, " +
+            "the buffer is written to the stocks periodically in one batched transaction")
+    ResponseEntity<ResponseDto<Void>> acceptTicks(
+            @Parameter(description = "The ticks. A tick finds its stock by id, or by name if id is null.", required = true)
+            @RequestBody List<TickDto> ticks);
+
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Updated success. ETag has the new version"),
             @ApiResponse(responseCode = "400", description = "If the request is not valid. For more information read the message of the error",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))}),
             @ApiResponse(responseCode = "404", description = "if the stock is not found.",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))}),
+            @ApiResponse(responseCode = "409", description = "if the stock is updated by another request meanwhile (without If-Match).",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))}),
+            @ApiResponse(responseCode = "412", description = "if If-Match is not the current ETag of the stock.",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))}),
             @ApiResponse(responseCode = "500", description = "if the stock couldn't be partial updated.",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
     })
-    @Operation(summary = "Updates an existing stock. It must already have an id")
+    @Operation(summary = "Updates an existing stock. It must already have an id. With If-Match the update is done only if the stock is not changed since that ETag")
     ResponseEntity<ResponseDto<StockDto>> updateStock(
             @Parameter(description = "The id of the stock that you are going to update it.", example = "1", required = true)
             @PathVariable(value = "id", required = false) Long id,
             @Parameter(description = "The stockDto that you want to update it.", required = true,
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = StockDto.class))})
-            @Valid @RequestBody StockDto stockDto);
+            @Valid @RequestBody StockDto stockDto,
+            @Parameter(description = "The ETag of the stock that is updated, from GET. * updates any version.", example = "\"1-0\"") String ifMatch);
 
 
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Partial updates success"),
+            @ApiResponse(responseCode = "200", description = "Partial updates success. ETag has the new version"),
             @ApiResponse(responseCode = "400", description = "If the request is not valid. For more information read the message of the error",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))}),
             @ApiResponse(responseCode = "404", description = "if the stock is not found.",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))}),
+            @ApiResponse(responseCode = "409", description = "if the stock is updated by another request meanwhile (without If-Match).",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))}),
+            @ApiResponse(responseCode = "412", description = "if If-Match is not the current ETag of the stock.",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))}),
             @ApiResponse(responseCode = "500", description = "if the stock couldn't be updated.",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ResponseDto.class))})
     })
@@ -94,7 +263,8 @@ public interface StockEndpoint {
             @PathVariable(value = "id", required = false) Long id,
             @Parameter(description = "The stockDto that you want to update it.", required = true,
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = StockDto.class))})
-            @RequestBody StockDto stockDto
+            @RequestBody StockDto stockDto,
+            @Parameter(description = "The ETag of the stock that is updated, from GET. * updates any version.", example = "\"1-0\"") String ifMatch
     );
 
 
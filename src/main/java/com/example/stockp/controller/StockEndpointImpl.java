@@ -2,9 +2,22 @@ package com.example.stockp.controller;
 
 
 import com.example.stockp.exception.BadRequestException;
+import com.example.stockp.service.PriceHistoryService;
+import com.example.stockp.service.StockCatalogService;
+import com.example.stockp.service.StockBatchService;
+import com.example.stockp.service.StockExportService;
+import com.example.stockp.service.StockSearchService;
 import com.example.stockp.service.StockService;
+import com.example.stockp.service.StockStreamService;
+import com.example.stockp.service.StockTickService;
+import com.example.stockp.service.dto.BatchResultDto;
+import com.example.stockp.service.dto.KeysetSliceDto;
+import com.example.stockp.service.dto.PricePointDto;
 import com.example.stockp.service.dto.ResponseDto;
 import com.example.stockp.service.dto.StockDto;
+import com.example.stockp.service.dto.StockMatchDto;
+import com.example.stockp.service.dto.TickDto;
+import com.example.stockp.util.ETagUtil;
 import com.example.stockp.util.PaginationUtil;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
@@ -12,6 +25,11 @@ import org.springdoc.api.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.hateoas.Link;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -20,15 +38,28 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 /**
  * REST controller for managing Stock.
@@ -42,20 +73,57 @@ public class StockEndpointImpl implements StockEndpoint {
     private static final String HEADER_X_TOTAL_COUNT = "X-Total-Count";
     private static final String HEADER_X_PAGE_CURRETN = "X-Page-Current";
     private static final String HEADER_X_PAGE_TOTAL = "X-Page-Total";
+    private static final String HEADER_X_NEXT_CURSOR = "X-Next-Cursor";
+
+    private static final String HEADER_X_NEXT_FROM = "X-Next-From";
+    private static final String DATE_TIME_WITHOUT_MILLIS = "yyyy-MM-dd'T'HH:mm:ssXXX";
 
     private final StockService stockService;
 
+    private final StockBatchService stockBatchService;
+
+    private final StockTickService stockTickService;
+
+    private final PriceHistoryService priceHistoryService;
+
+    private final StockExportService stockExportService;
+
+    private final StockStreamService stockStreamService;
+
+    private final StockSearchService stockSearchService;
+
+    private final StockCatalogService stockCatalogService;
+
     @Value("${hateoas.disabled}")
     private boolean disabledHateoas;
 
-    public StockEndpointImpl(StockService stockService) {
+    public StockEndpointImpl(StockService stockService, StockBatchService stockBatchService, StockTickService stockTickService,
+                             PriceHistoryService priceHistoryService, StockExportService stockExportService,
+                             StockStreamService stockStreamService, StockSearchService stockSearchService,
+                             StockCatalogService stockCatalogService) {
         this.stockService = stockService;
+        this.stockBatchService = stockBatchService;
+        this.stockTickService = stockTickService;
+        this.priceHistoryService = priceHistoryService;
+        this.stockExportService = stockExportService;
+        this.stockStreamService = stockStreamService;
+        this.stockSearchService = stockSearchService;
+        this.stockCatalogService = stockCatalogService;
     }
 
     @Override
     @GetMapping(value="", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<ResponseDto<StockDto>> getAllStocks(@ParameterObject Pageable pageable) {
+    public ResponseEntity<ResponseDto<StockDto>> getAllStocks(@ParameterObject Pageable pageable,
+                                                              @RequestParam(defaultValue = "true") boolean total,
+                                                              WebRequest webRequest) {
         log.debug("REST request to get a page of Stocks;");
+        ResponseEntity<ResponseDto<StockDto>> notModified = notModified(webRequest, () -> stockService.findPageETag(pageable, total));
+        if (notModified != null) {
+            return notModified;
+        }
+        if (!total) {
+            return getSliceOfStocks(pageable);
+        }
         Page<StockDto> page = stockService.findAll(pageable);
         ResponseDto<StockDto> responseDto = ResponseDto.<StockDto>builder().payload(page.getContent()).build();
         HttpHeaders headers = setPaginationHeader(page); // Put some useful information about pagination in header
@@ -64,20 +132,147 @@ public class StockEndpointImpl implements StockEndpoint {
             List<Link> linkBuilderList = PaginationUtil.generatePaginationList(ServletUriComponentsBuilder.fromCurrentRequest(), page);
             responseDto.add(linkBuilderList);
         }
+        return ResponseEntity.ok().headers(headers).eTag(ETagUtil.ofPage(page, StockDto::getId, StockDto::getVersion)).body(responseDto);
+    }
+
+    @Override
+    @GetMapping(value = "", params = "after", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseDto<StockDto>> getAllStocksAfter(@RequestParam String after,
+                                                                   @RequestParam(defaultValue = "20") int size,
+                                                                   @RequestParam(defaultValue = "id") String order,
+                                                                   @RequestParam(defaultValue = "asc") String direction) {
+        log.debug("REST request to get a keyset page of Stocks; after: {}", after);
+        KeysetSliceDto<StockDto> slice = stockService.findAllAfter(after, order, direction, size);
+        ResponseDto<StockDto> responseDto = ResponseDto.<StockDto>builder().payload(slice.getContent()).build();
+        HttpHeaders headers = new HttpHeaders();
+        if (slice.hasNext()) {
+            headers.add(HEADER_X_NEXT_CURSOR, slice.getNextCursor());
+        }
+        if (!disabledHateoas) {
+            responseDto.add(PaginationUtil.generateCursorPaginationList(ServletUriComponentsBuilder.fromCurrentRequest(), slice.getNextCursor(), size));
+        }
         return ResponseEntity.ok().headers(headers).body(responseDto);
     }
 
+    @Override
+    @GetMapping(value = "", params = "ids", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseDto<StockDto>> getStocksByIds(@RequestParam List<Long> ids) {
+        log.debug("REST request to get Stocks by ids. size: {}", ids.size());
+        return ResponseEntity.ok(toMultiGetResponse(ids));
+    }
+
+    @Override
+    @PostMapping(value = "/by-ids", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseDto<StockDto>> getStocksByIdsOfBody(@RequestBody List<Long> ids) {
+        log.debug("REST request to get Stocks by ids of body. size: {}", ids.size());
+        return ResponseEntity.ok(toMultiGetResponse(ids));
+    }
+
+    @Override
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportStocks(@RequestParam(defaultValue = "ndjson") String format,
+                                                              @RequestParam(defaultValue = "1") int workers) {
+        log.debug("REST request to export all Stocks. format: {}, workers: {}", format, workers);
+        StockExportService.Format exportFormat = StockExportService.Format.of(format);
+        StreamingResponseBody body = out -> stockExportService.export(exportFormat, workers, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=stocks." + exportFormat.getExtension())
+                .body(body);
+    }
+
+    @Override
+    @GetMapping("/catalog")
+    public ResponseEntity<Resource> getCatalog(WebRequest webRequest) {
+        log.debug("REST request to get the catalog of Stocks");
+        StockCatalogService.Snapshot snapshot = stockCatalogService.snapshot();
+        boolean gzip = acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String eTag = gzip ? snapshot.getETag().replaceFirst("\"$", "-gzip\"") : snapshot.getETag(); // a tag per representation
+        ResponseEntity<Resource> notModified = notModified(webRequest, () -> eTag);
+        if (notModified != null) {
+            return notModified;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(StockCatalogService.MEDIA_TYPE))
+                .header(HEADER_X_TOTAL_COUNT, Long.toString(snapshot.getStocks()))
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .eTag(eTag);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(new ByteArrayResource(snapshot.getGzip()));
+        }
+        try {
+            return response.body(new InputStreamResource(new GZIPInputStream(new ByteArrayInputStream(snapshot.getGzip()))));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStocks(@RequestParam Set<Long> ids) {
+        log.debug("REST request to stream Stocks : {}", ids);
+        return stockStreamService.subscribe(ids);
+    }
 
     @Override
     @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<ResponseDto<StockDto>> getStock(@PathVariable Long id) {
+    public ResponseEntity<ResponseDto<StockDto>> getStock(@PathVariable Long id, WebRequest webRequest) {
         log.debug("REST request to get Stock : {}", id);
+        ResponseEntity<ResponseDto<StockDto>> notModified = notModified(webRequest, () -> stockService.findETag(id).orElse(null));
+        if (notModified != null) {
+            return notModified;
+        }
+        StockDto stockDto = stockService.findOne(id);
         ResponseDto<StockDto> responseDto = ResponseDto.<StockDto>builder()
-                .payload(List.of(stockService.findOne(id)))
+                .payload(List.of(stockDto))
+                .build();
+        return ResponseEntity.ok().eTag(ETagUtil.ofStock(stockDto.getId(), stockDto.getVersion())).body(responseDto);
+    }
+
+    @Override
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseDto<StockMatchDto>> searchStocks(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        log.debug("REST request to search Stocks : {}", q);
+        ResponseDto<StockMatchDto> responseDto = ResponseDto.<StockMatchDto>builder()
+                .payload(stockSearchService.search(q, limit))
                 .build();
         return ResponseEntity.ok(responseDto);
     }
 
+    @Override
+    @GetMapping(value = "/by-name/{name}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseDto<StockDto>> getStockByName(@PathVariable String name) {
+        log.debug("REST request to get Stock by name : {}", name);
+        StockDto stockDto = stockService.findByName(name);
+        ResponseDto<StockDto> responseDto = ResponseDto.<StockDto>builder()
+                .payload(List.of(stockDto))
+                .build();
+        return ResponseEntity.ok().eTag(ETagUtil.ofStock(stockDto.getId(), stockDto.getVersion())).body(responseDto);
+    }
+
+    @Override
+    @GetMapping(value = "/{id:\\d+}/history", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseDto<PricePointDto>> getStockHistory(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = DATE_TIME_WITHOUT_MILLIS) Date from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = DATE_TIME_WITHOUT_MILLIS) Date to) {
+        log.debug("REST request to get price history of Stock : {}, from: {}, to: {}", id, from, to);
+        KeysetSliceDto<PricePointDto> slice = priceHistoryService.findHistory(id, from, to);
+        ResponseDto<PricePointDto> responseDto = ResponseDto.<PricePointDto>builder()
+                .payload(slice.getContent())
+                .build();
+        HttpHeaders headers = new HttpHeaders();
+        if (slice.hasNext()) { // truncated at history.max-points
+            responseDto.setDetails("#The history is truncated at " + slice.getContent().size() + " prices! The next ones are from " + slice.getNextCursor());
+            headers.add(HEADER_X_NEXT_FROM, slice.getNextCursor());
+            if (!disabledHateoas) {
+                responseDto.add(Link.of(ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam("from", slice.getNextCursor())
+                        .toUriString()).withRel("next"));
+            }
+        }
+        return ResponseEntity.ok().headers(headers).body(responseDto);
+    }
+
     /**
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
@@ -92,38 +287,77 @@ public class StockEndpointImpl implements StockEndpoint {
                 .body(responseDto);
     }
 
+    @Override
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseDto<BatchResultDto>> createStocks(@RequestBody List<StockDto> stockDtos) {
+        log.debug("REST request to save a batch of Stocks. size: {}", stockDtos.size());
+        List<BatchResultDto> results = stockBatchService.saveAll(stockDtos);
+        ResponseDto<BatchResultDto> responseDto = ResponseDto.<BatchResultDto>builder().httpStatus(HttpStatus.OK).payload(results).build();
+        return ResponseEntity.status(responseDto.getHttpStatus()).body(responseDto);
+    }
+
+    @Override
+    @PatchMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseDto<BatchResultDto>> partialUpdateStocks(@RequestBody List<StockDto> stockDtos) {
+        log.debug("REST request to partially update a batch of Stocks. size: {}", stockDtos.size());
+        List<BatchResultDto> results = stockBatchService.updateAll(stockDtos);
+        ResponseDto<BatchResultDto> responseDto = ResponseDto.<BatchResultDto>builder().httpStatus(HttpStatus.OK).payload(results).build();
+        return ResponseEntity.status(responseDto.getHttpStatus()).body(responseDto);
+    }
+
+    @Override
+    @DeleteMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseDto<BatchResultDto>> deleteStocks(@RequestBody List<Long> ids) {
+        log.debug("REST request to delete a batch of Stocks. size: {}", ids.size());
+        List<BatchResultDto> results = stockBatchService.deleteAll(ids);
+        ResponseDto<BatchResultDto> responseDto = ResponseDto.<BatchResultDto>builder().httpStatus(HttpStatus.OK).payload(results).build();
+        return ResponseEntity.status(responseDto.getHttpStatus()).body(responseDto);
+    }
+
+    @Override
+    @PostMapping(value = "/ticks", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseDto<Void>> acceptTicks(@RequestBody List<TickDto> ticks) {
+        log.debug("REST request to accept price ticks. size: {}", ticks.size());
+        int accepted = stockTickService.accept(ticks);
+        ResponseDto<Void> responseDto = ResponseDto.<Void>builder().httpStatus(HttpStatus.ACCEPTED)
+                .message("Accepted").details("accepted ticks: " + accepted).build();
+        return ResponseEntity.status(responseDto.getHttpStatus()).body(responseDto);
+    }
+
     @Override
     @PutMapping(value = "/{id}",consumes = MediaType.APPLICATION_JSON_VALUE,produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<ResponseDto<StockDto>> updateStock(
-            @PathVariable(value = "id") final Long id, @Valid @RequestBody StockDto stockDto) {
+            @PathVariable(value = "id") final Long id, @Valid @RequestBody StockDto stockDto,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.debug("REST request to update Stock : {}, {}", id, stockDto);
 
         if (!Objects.equals(id, stockDto.getId())) {
             throw new BadRequestException("id invalid! Id of dto must be equal to id provided by path! dto.id is: " + stockDto.getId() + " ,path id is: " + id);
         }
 
-        StockDto result = stockService.update(stockDto);
+        StockDto result = stockService.update(stockDto, ifMatch == null ? null : ETagUtil.versionOf(ifMatch, id));
         ResponseDto<StockDto> responseDto = ResponseDto.<StockDto>builder().httpStatus(HttpStatus.OK).payload(List.of(result)).build();
-        return ResponseEntity.status(responseDto.getHttpStatus()).body(responseDto);
+        return ResponseEntity.status(responseDto.getHttpStatus()).eTag(ETagUtil.ofStock(result.getId(), result.getVersion())).body(responseDto);
     }
 
     @Override
     @PatchMapping(value = "/{id}", consumes = {"application/json", "application/merge-patch+json"})
     public ResponseEntity<ResponseDto<StockDto>> partialUpdateStock(
             @PathVariable(value = "id", required = false) final Long id,
-            @RequestBody StockDto stockDto
+            @RequestBody StockDto stockDto,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) {
         log.debug("REST request to partial update Stock partially : {}, {}", id, stockDto);
 
         if (!Objects.equals(id, stockDto.getId())) {
             throw new BadRequestException("id invalid! Id of dto must be equal to id provided by path! dto.id is: " + stockDto.getId() + " ,path id is: " + id);
         }
-        StockDto result = stockService.partialUpdate(stockDto);
+        StockDto result = stockService.partialUpdate(stockDto, ifMatch == null ? null : ETagUtil.versionOf(ifMatch, id));
         ResponseDto<StockDto> responseDto = ResponseDto.<StockDto>builder()
                 .httpStatus(HttpStatus.OK)
                 .payload(List.of(result)).build();
 
-        return ResponseEntity.status(responseDto.getHttpStatus()).body(responseDto);
+        return ResponseEntity.status(responseDto.getHttpStatus()).eTag(ETagUtil.ofStock(result.getId(), result.getVersion())).body(responseDto);
     }
 
 
@@ -142,6 +376,59 @@ public class StockEndpointImpl implements StockEndpoint {
                 .path(request.getRequestURI());
     }
 
+    private ResponseEntity<ResponseDto<StockDto>> getSliceOfStocks(Pageable pageable) {
+        Slice<StockDto> slice = stockService.findSlice(pageable);
+        ResponseDto<StockDto> responseDto = ResponseDto.<StockDto>builder().payload(slice.getContent()).build();
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HEADER_X_PAGE_CURRETN, Long.toString(slice.getNumber()));
+        if (!disabledHateoas) {
+            responseDto.add(PaginationUtil.generateSlicePaginationList(ServletUriComponentsBuilder.fromCurrentRequest(), slice));
+        }
+        return ResponseEntity.ok().headers(headers).eTag(ETagUtil.ofPage(slice, StockDto::getId, StockDto::getVersion)).body(responseDto);
+    }
+
+    /**
+     * Every missing stock is reported in errors by its id, the found ones are the payload.
+     */
+    private ResponseDto<StockDto> toMultiGetResponse(List<Long> ids) {
+        List<StockDto> stockDtos = stockService.findAllById(ids);
+        Set<Long> found = stockDtos.stream().map(StockDto::getId).collect(Collectors.toSet());
+        Map<String, String> missing = new LinkedHashMap<>();
+        ids.stream().filter(id -> !found.contains(id)).forEach(id -> missing.put(id.toString(), "Could not find the stock"));
+        return ResponseDto.<StockDto>builder()
+                .payload(stockDtos)
+                .errors(missing.isEmpty() ? null : missing)
+                .build();
+    }
+
+    /**
+     * 304 if If-None-Match has the current ETag, null otherwise. The current ETag is looked up only for a conditional request,
+     * the ETag of a 200 comes from the body that is sent.
+     */
+    private static <T> ResponseEntity<T> notModified(WebRequest webRequest, Supplier<String> currentETag) {
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) == null) {
+            return null;
+        }
+        String eTag = currentETag.get();
+        if (eTag == null || !webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
     private HttpHeaders setPaginationHeader(Page<StockDto> page) {
         HttpHeaders headers = new HttpHeaders();
         headers.add(HEADER_X_TOTAL_COUNT, Long.toString(page.getTotalElements()));
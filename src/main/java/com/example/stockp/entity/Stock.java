@@ -1,11 +1,14 @@
 package com.example.stockp.entity;
 
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.springframework.hateoas.RepresentationModel;
 
 import javax.persistence.*;
@@ -14,6 +17,7 @@ import java.util.Date;
 
 /**
  * save STOCK data
+ * Cached in the second level cache, by id and by its natural id (name).
  */
 @Getter
 @Setter
@@ -21,16 +25,23 @@ import java.util.Date;
 @Entity
 @Table(name = "T_STOCK"
         , uniqueConstraints = {@UniqueConstraint(name = "UNQ_STO_NAME", columnNames = "NAME")}
+        , indexes = { // keyset pagination seeks these indexes, ID is the tie-breaker
+                @Index(name = "IDX_STO_CURRENT_PRICE_ID", columnList = "CURRENT_PRICE, ID"),
+                @Index(name = "IDX_STO_LAST_UPDATE_ID", columnList = "LAST_UPDATE, ID")}
 )
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 public class Stock implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
     @Id
     @Column(name = "ID", nullable = false)
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stockSequenceGenerator")
+    @SequenceGenerator(name = "stockSequenceGenerator", sequenceName = "SEQ_STOCK", allocationSize = 50) // pooled, IDENTITY disables insert batching
     private Long id;
 
+    @NaturalId(mutable = true) // name can be changed by update and partial update
     @Column(name = "NAME", length = 60, nullable = false)
     private String name;
 
@@ -40,6 +51,15 @@ public class Stock implements Serializable {
     @Column(name = "LAST_UPDATE")
     private Date lastUpdate;
 
+    @Version // an UPDATE is conditional on it, so concurrent writers of a stock cannot overwrite each other
+    @Column(name = "VERSION", nullable = false)
+    private Long version;
+
+    @Transient // last update is the time of the tick, not the time of the flush
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean lastUpdateOfTick;
+
     public Stock(String name, Long currentPrice) {
         this.name = name;
         this.currentPrice = currentPrice;
@@ -63,10 +83,20 @@ public class Stock implements Serializable {
         return this.lastUpdate;
     }
 
+    /**
+     * The price of a tick, last update is the time of the tick. So a later tick with an older time can be told from a newer price.
+     */
+    public void tick(Long price, Date timestamp) {
+        this.currentPrice = price;
+        this.lastUpdate = timestamp;
+        this.lastUpdateOfTick = true;
+    }
+
     @PreUpdate
     @PrePersist
     public void onUpdate() {
-        lastUpdate = new Date();
+        if (!lastUpdateOfTick) lastUpdate = new Date();
+        lastUpdateOfTick = false;
     }
 
     @Override
@@ -92,6 +122,7 @@ public class Stock implements Serializable {
                 ", name='" + getName() + "'" +
                 ", currentPrice=" + getCurrentPrice() +
                 ", lastUpdate='" + getLastUpdate() + "'" +
+                ", version=" + getVersion() +
                 "}";
     }
 }
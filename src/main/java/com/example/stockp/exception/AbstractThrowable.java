@@ -1,17 +1,24 @@
 package com.example.stockp.exception;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.springframework.http.HttpStatus;
 
 /**
  * @author Mahdi Sharifi
+ * A client error (4xx) is an expected outcome of a request, e.g. a scraper asking for missing ids, and its stack trace is never read.
+ * So it is not captured, it costs more than the rest of the request. A server error keeps its stack trace.
  */
-
-@AllArgsConstructor @Getter
+@Getter
 public class AbstractThrowable extends RuntimeException {
 
     private final String message;//"Could not find account with id: "
     private final HttpStatus httpStatus; // NOT_FOUND
     private final int errorCode;
+
+    public AbstractThrowable(String message, HttpStatus httpStatus, int errorCode) {
+        super(message, null, false, !httpStatus.is4xxClientError());
+        this.message = message;
+        this.httpStatus = httpStatus;
+        this.errorCode = errorCode;
+    }
 }
@@ -0,0 +1,13 @@
+package com.example.stockp.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * When If-Match of a write does not have the current ETag of the stock throw this exception, the client should get the stock and try again
+ */
+public class PreconditionFailedException extends AbstractThrowable {
+
+    public PreconditionFailedException(String reason) {
+        super("Precondition failed! The stock is changed. Reason: " + reason, HttpStatus.PRECONDITION_FAILED, 4120);
+    }
+}
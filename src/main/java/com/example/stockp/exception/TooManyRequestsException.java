@@ -0,0 +1,13 @@
+package com.example.stockp.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * When a buffer of the service is full throw this exception, the client should retry later
+ */
+public class TooManyRequestsException extends AbstractThrowable {
+
+    public TooManyRequestsException(String reason) {
+        super("Too many requests! Try again later. Reason: " + reason, HttpStatus.TOO_MANY_REQUESTS, 4029);
+    }
+}
@@ -3,24 +3,32 @@ package com.example.stockp.exception.globalhandler;
 
 import com.example.stockp.exception.AbstractThrowable;
 import com.example.stockp.exception.BadRequestException;
+import com.example.stockp.exception.PreconditionFailedException;
 import com.example.stockp.exception.StockNotFoundException;
+import com.example.stockp.exception.TooManyRequestsException;
 import com.example.stockp.service.dto.ResponseDto;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import javax.validation.ConstraintViolationException;
+import java.sql.SQLTransientConnectionException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -34,12 +42,16 @@ import java.util.Map;
 @Slf4j
 public class GlobalExceptionHandler {
 
+    public static final String ERROR_CODE_ATTRIBUTE = GlobalExceptionHandler.class.getName() + ".errorCode";
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(value = MethodArgumentTypeMismatchException.class)
     public ResponseEntity<ResponseDto<Void>> handleMethodArgumentTypeMismatchException(MethodArgumentTypeMismatchException ex) {
         ResponseDto<Void> responseDto = ResponseDto.<Void>builder().httpStatus(HttpStatus.BAD_REQUEST).errorCode(4006)
                 .message("#Validation method argument type mismatch error!").details(ex.getMessage() + " #parameter: " + ex.getParameter()).build();
-        return new ResponseEntity<>(responseDto, responseDto.getHttpStatus());
+        return respond(responseDto);
     }
 
     @ExceptionHandler(value = {MethodArgumentNotValidException.class})
@@ -56,7 +68,7 @@ public class GlobalExceptionHandler {
             responseDto.setDetails(ex.getBindingResult().toString());
             responseDto.setErrors(errors);
         }
-        return new ResponseEntity<>(responseDto, responseDto.getHttpStatus());
+        return respond(responseDto);
     }
 
     @ExceptionHandler(value = {HttpRequestMethodNotSupportedException.class})
@@ -67,7 +79,7 @@ public class GlobalExceptionHandler {
                 .message("#Method Not Allowed!").errorCode(4050).build();
         if (log.isDebugEnabled())
             responseDto.setDetails(ex.getLocalizedMessage() + " ;" + request);
-        return new ResponseEntity<>(responseDto, responseDto.getHttpStatus());
+        return respond(responseDto);
     }
 
 
@@ -78,7 +90,7 @@ public class GlobalExceptionHandler {
                 .message("#This entity does not exists!!").errorCode(4043).build();
         if (log.isDebugEnabled())
             responseDto.setDetails(ex.getMessage());
-        return new ResponseEntity<>(responseDto, responseDto.getHttpStatus());
+        return respond(responseDto);
     }
 
     @ExceptionHandler(value = {DataIntegrityViolationException.class})
@@ -88,12 +100,64 @@ public class GlobalExceptionHandler {
                 .message("#Unique index or primary key violation!").errorCode(4005).build();
         if (log.isDebugEnabled())
             responseDto.setDetails(ex.getMessage() );
-        return new ResponseEntity<>(responseDto, responseDto.getHttpStatus());
+        return respond(responseDto);
+    }
+
+    /**
+     * A write without If-Match that lost the race on the version of a stock.
+     */
+    @ExceptionHandler(value = {OptimisticLockingFailureException.class})
+    public ResponseEntity<ResponseDto<Void>> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+
+        ResponseDto<Void> responseDto = ResponseDto.<Void>builder().httpStatus(HttpStatus.CONFLICT)
+                .message("#The stock is changed by another request! Get it and try again.").errorCode(4090).build();
+        if (log.isDebugEnabled())
+            responseDto.setDetails(ex.getMessage());
+        return respond(responseDto);
+    }
+
+    /**
+     * No connection of the pool was free within spring.datasource.hikari.connection-timeout, the database is busy, so the client is told to retry.
+     * Any other failure to begin a transaction (the database is down, a wrong password) is not answered here: hikari reports it
+     * as the cause of its timeout, or as another exception.
+     */
+    @ExceptionHandler(value = {CannotCreateTransactionException.class})
+    public ResponseEntity<ResponseDto<Void>> handleCannotCreateTransactionException(CannotCreateTransactionException ex) {
+        if (!isPoolExhausted(ex)) throw ex; // the default handling, 500
+
+        ResponseDto<Void> responseDto = ResponseDto.<Void>builder().httpStatus(HttpStatus.SERVICE_UNAVAILABLE)
+                .message("#The database is busy! Try again later.").errorCode(5030).build();
+        if (log.isDebugEnabled())
+            responseDto.setDetails(ex.getMessage());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        return respond(responseDto, headers);
     }
 
-    @ExceptionHandler(value = {BadRequestException.class, StockNotFoundException.class})
+    @ExceptionHandler(value = {BadRequestException.class, StockNotFoundException.class, TooManyRequestsException.class,
+            PreconditionFailedException.class})
     public ResponseEntity<ResponseDto<Void>> handleException(AbstractThrowable ex) {
-        return ResponseEntity.status(ex.getHttpStatus()).body(toDto(ex));
+        return respond(toDto(ex));
+    }
+
+    /**
+     * The error code is kept on the request, so it tags the http.server.requests metric.
+     */
+    private ResponseEntity<ResponseDto<Void>> respond(ResponseDto<Void> responseDto) {
+        return respond(responseDto, HttpHeaders.EMPTY);
+    }
+
+    private ResponseEntity<ResponseDto<Void>> respond(ResponseDto<Void> responseDto, HttpHeaders headers) {
+        RequestContextHolder.currentRequestAttributes()
+                .setAttribute(ERROR_CODE_ATTRIBUTE, responseDto.getErrorCode(), RequestAttributes.SCOPE_REQUEST);
+        return new ResponseEntity<>(responseDto, headers, responseDto.getHttpStatus());
+    }
+
+    private static boolean isPoolExhausted(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException) return cause.getCause() == null;
+        }
+        return false;
     }
 
     private ResponseDto<Void> toDto(AbstractThrowable exception) {
@@ -0,0 +1,89 @@
+package com.example.stockp.repository;
+
+import com.example.stockp.entity.Stock;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.function.Function;
+
+/**
+ * Position of a keyset (cursor) page: the sort key and the last row seen, id is the tie-breaker.
+ * lastId null means the first page. It is written to clients as an opaque cursor.
+ */
+@Getter
+public final class StockKeyset {
+
+    @Getter
+    public enum Order {
+        ID("id", "id", Stock::getId),
+        CURRENT_PRICE("current_price", "currentPrice", Stock::getCurrentPrice),
+        LAST_UPDATE("last_update", "lastUpdate", Stock::getLastUpdate);
+
+        private final String jsonName; // name of the field in json
+        private final String property; // name of the field in entity
+        private final Function<Stock, Object> value;
+
+        Order(String jsonName, String property, Function<Stock, Object> value) {
+            this.jsonName = jsonName;
+            this.property = property;
+            this.value = value;
+        }
+
+        public static Order of(String jsonName) {
+            return Arrays.stream(values()).filter(order -> order.jsonName.equals(jsonName)).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("order must be one of id, current_price, last_update. actual: " + jsonName));
+        }
+    }
+
+    private static final String SEPARATOR = ",";
+
+    private final Order order;
+    private final boolean descending;
+    private final Object lastValue;
+    private final Long lastId;
+
+    private StockKeyset(Order order, boolean descending, Object lastValue, Long lastId) {
+        this.order = order;
+        this.descending = descending;
+        this.lastValue = lastValue;
+        this.lastId = lastId;
+    }
+
+    public static StockKeyset first(Order order, boolean descending) {
+        return new StockKeyset(order, descending, null, null);
+    }
+
+    public StockKeyset next(Stock last) {
+        return new StockKeyset(order, descending, order == Order.ID ? null : order.value.apply(last), last.getId());
+    }
+
+    public boolean isFirst() {
+        return lastId == null;
+    }
+
+    public String toCursor() {
+        String value = lastValue instanceof Date ? Long.toString(((Date) lastValue).getTime()) : lastValue == null ? "" : lastValue.toString();
+        String plain = String.join(SEPARATOR, order.name(), descending ? "desc" : "asc", Long.toString(lastId), value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor is not one made by {@link #toCursor()}
+     */
+    public static StockKeyset fromCursor(String cursor) {
+        String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("cursor is malformed: " + cursor);
+        }
+        Order order = Order.valueOf(parts[0]);
+        Object lastValue = null;
+        if (!parts[3].isEmpty()) {
+            long value = Long.parseLong(parts[3]);
+            lastValue = order == Order.LAST_UPDATE ? new Date(value) : value;
+        }
+        return new StockKeyset(order, "desc".equals(parts[1]), lastValue, Long.parseLong(parts[2]));
+    }
+}
@@ -1,12 +1,54 @@
 package com.example.stockp.repository;
 
 import com.example.stockp.entity.Stock;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Repository for the Stock entity.
  */
 
 @Repository
-public interface StockRepository extends JpaRepository<Stock, Long> {}
+public interface StockRepository extends JpaRepository<Stock, Long>, StockRepositoryCustom {
+
+    /**
+     * A page of stocks without the COUNT(*) of findAll(Pageable). It reads one more row to know there is a next page.
+     */
+    Slice<Stock> findSliceBy(Pageable pageable);
+
+    /**
+     * Id and version of a stock, what its ETag is derived from.
+     */
+    Optional<StockVersion> findVersionById(Long id);
+
+    /**
+     * Id and version of the stocks of a page, the same rows as findSliceBy.
+     */
+    Slice<StockVersion> findVersionsBy(Pageable pageable);
+
+    @Query("select s.name from Stock s where s.name in :names")
+    List<String> findExistingNames(@Param("names") Collection<String> names);
+
+    List<Stock> findByNameIn(Collection<String> names);
+
+    @Query("select min(s.id) from Stock s")
+    Long findMinId();
+
+    @Query("select max(s.id) from Stock s")
+    Long findMaxId();
+
+    /**
+     * Ids of the stocks inserted or updated at or after since, a range of the (LAST_UPDATE, ID) index.
+     */
+    @Query("select s.id from Stock s where s.lastUpdate >= :since")
+    List<Long> findIdsUpdatedSince(@Param("since") Date since);
+}
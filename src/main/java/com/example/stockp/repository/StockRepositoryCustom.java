@@ -0,0 +1,35 @@
+package com.example.stockp.repository;
+
+import com.example.stockp.entity.Stock;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Custom queries of the Stock entity that Spring Data can not derive.
+ */
+public interface StockRepositoryCustom {
+
+    /**
+     * Load a stock by its natural id. It is served by the natural id cache then the entity cache before hitting the database.
+     */
+    Optional<Stock> findByNaturalName(String name);
+
+    /**
+     * Keyset (seek) pagination. Returns at most limit stocks that come after the keyset, without OFFSET and without COUNT.
+     */
+    List<Stock> findAfter(StockKeyset keyset, int limit);
+
+    /**
+     * Load the stocks of the ids in the order of the ids, null for an id that does not exist.
+     * Stocks of the persistence context and of the second level cache are not read again, the others are read by IN queries of batchSize ids.
+     */
+    List<Stock> findAllByIdInOrder(List<Long> ids, int batchSize);
+
+    /**
+     * Read the stocks whose id is between fromId and toId (inclusive) in order of id, through a server-side cursor of fetchSize rows.
+     * The stocks are not kept by a persistence context nor put into the second level cache, memory stays flat whatever the count of stocks.
+     */
+    void scrollByIdBetween(long fromId, long toId, int fetchSize, Consumer<Stock> consumer);
+}
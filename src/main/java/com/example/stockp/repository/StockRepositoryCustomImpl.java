@@ -0,0 +1,109 @@
+package com.example.stockp.repository;
+
+import com.example.stockp.entity.Stock;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
+import javax.persistence.TypedQuery;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Implementation of {@link StockRepositoryCustom} on top of the hibernate session.
+ */
+public class StockRepositoryCustomImpl implements StockRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public Optional<Stock> findByNaturalName(String name) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Stock.class)
+                .loadOptional(name);
+    }
+
+    /**
+     * The condition is written as "key >= value and (key > value or id > lastId)" so the database seeks the (key, id) index.
+     * MariaDB and H2 sort null as the lowest value: nulls come first in ascending and last in descending order.
+     */
+    @Override
+    public List<Stock> findAfter(StockKeyset keyset, int limit) {
+        String key = "s." + keyset.getOrder().getProperty();
+        String direction = keyset.isDescending() ? " desc" : " asc";
+        String after = keyset.isDescending() ? " < " : " > ";
+        String afterOrEqual = keyset.isDescending() ? " <= " : " >= ";
+        StringBuilder jpql = new StringBuilder("select s from Stock s");
+        if (!keyset.isFirst()) {
+            if (keyset.getOrder() == StockKeyset.Order.ID) {
+                jpql.append(" where s.id").append(after).append(":lastId");
+            } else if (keyset.getLastValue() == null) { // inside the nulls
+                jpql.append(keyset.isDescending()
+                        ? " where " + key + " is null and s.id < :lastId"
+                        : " where (" + key + " is null and s.id > :lastId) or " + key + " is not null");
+            } else {
+                jpql.append(" where (").append(key).append(afterOrEqual).append(":lastValue and (")
+                        .append(key).append(after).append(":lastValue or s.id").append(after).append(":lastId))");
+                if (keyset.isDescending()) jpql.append(" or ").append(key).append(" is null");
+            }
+        }
+        jpql.append(" order by ");
+        if (keyset.getOrder() != StockKeyset.Order.ID) jpql.append(key).append(direction).append(", ");
+        jpql.append("s.id").append(direction);
+
+        TypedQuery<Stock> query = entityManager.createQuery(jpql.toString(), Stock.class).setMaxResults(limit);
+        if (!keyset.isFirst()) {
+            query.setParameter("lastId", keyset.getLastId());
+            if (keyset.getOrder() != StockKeyset.Order.ID && keyset.getLastValue() != null) {
+                query.setParameter("lastValue", keyset.getLastValue());
+            }
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * A multi load reads the second level cache only with an explicit cache mode, by default it goes to the database for every id
+     * that is not in the persistence context.
+     */
+    @Override
+    public List<Stock> findAllByIdInOrder(List<Long> ids, int batchSize) {
+        return entityManager.unwrap(Session.class)
+                .byMultipleIds(Stock.class)
+                .with(CacheMode.NORMAL)
+                .enableOrderedReturn(true)
+                .enableSessionCheck(true)
+                .withBatchSize(batchSize)
+                .multiLoad(ids);
+    }
+
+    /**
+     * A stateless session has no persistence context and it does not touch the second level cache.
+     * It has its own connection, so a long export does not hold the transaction of the caller.
+     */
+    @Override
+    public void scrollByIdBetween(long fromId, long toId, int fetchSize, Consumer<Stock> consumer) {
+        try (StatelessSession session = entityManagerFactory.unwrap(SessionFactory.class).openStatelessSession();
+             ScrollableResults results = session.createQuery("select s from Stock s where s.id between :fromId and :toId order by s.id", Stock.class)
+                     .setParameter("fromId", fromId)
+                     .setParameter("toId", toId)
+                     .setFetchSize(fetchSize)
+                     .setReadOnly(true)
+                     .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept((Stock) results.get(0));
+            }
+        }
+    }
+}
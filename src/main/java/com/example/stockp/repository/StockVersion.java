@@ -0,0 +1,11 @@
+package com.example.stockp.repository;
+
+/**
+ * Projection of a stock to what its ETag is derived from, it is read without loading the entity.
+ */
+public interface StockVersion {
+
+    Long getId();
+
+    Long getVersion();
+}
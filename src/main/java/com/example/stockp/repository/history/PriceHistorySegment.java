@@ -0,0 +1,161 @@
+package com.example.stockp.repository.history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * A fixed-size segment file of the price history, mapped into memory. Records are appended, never changed.
+ * A record is: stock id (8 bytes), epoch millis (8), price (8), CRC32 of the previous 24 bytes (4).
+ * The file is allocated with its full size, so the end of the segment is the first record whose CRC does not match:
+ * zeros of the unused tail, or a record torn by a crash. Opening a segment scans it to find the end and to build its index.
+ */
+class PriceHistorySegment {
+
+    static final int RECORD_SIZE = 28;
+    private static final int PAYLOAD_SIZE = 24;
+    private static final long NULL_PRICE = Long.MIN_VALUE;
+
+    private final long sequence;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final Map<Long, Offsets> offsetsByStock = new HashMap<>();
+    private int position;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+
+    private PriceHistorySegment(long sequence, Path path, MappedByteBuffer buffer) {
+        this.sequence = sequence;
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Map the segment file, it is created with the given size if it does not exist.
+     */
+    static PriceHistorySegment open(long sequence, Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long capacity = Math.max(channel.size(), size);
+            PriceHistorySegment segment = new PriceHistorySegment(sequence, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+            segment.recover();
+            return segment;
+        }
+    }
+
+    /**
+     * @return false if the segment is full
+     */
+    boolean append(long stockId, long time, Long price) {
+        if (position + RECORD_SIZE > buffer.capacity()) return false;
+        buffer.putLong(position, stockId);
+        buffer.putLong(position + 8, time);
+        buffer.putLong(position + 16, price == null ? NULL_PRICE : price);
+        buffer.putInt(position + PAYLOAD_SIZE, checksum(position));
+        index(stockId, time, position);
+        position += RECORD_SIZE;
+        return true;
+    }
+
+    /**
+     * Records of the stock between from and to (inclusive), in order of append. Records later than until are not read.
+     * If the records of the stock were appended in order of time, the read starts at from by a binary search and stops at the first later record.
+     */
+    void read(long stockId, long from, long to, LongSupplier until, Consumer<PricePoint> consumer) {
+        if (maxTime < from || minTime > Math.min(to, until.getAsLong())) return;
+        Offsets offsets = offsetsByStock.get(stockId);
+        if (offsets == null) return;
+        for (int i = offsets.ordered ? firstAtOrAfter(offsets, from) : 0; i < offsets.count; i++) {
+            int offset = offsets.values[i];
+            long time = buffer.getLong(offset + 8);
+            long last = Math.min(to, until.getAsLong());
+            if (time > last && offsets.ordered) return;
+            if (time < from || time > last) continue;
+            long price = buffer.getLong(offset + 16);
+            consumer.accept(new PricePoint(stockId, new Date(time), price == NULL_PRICE ? null : price));
+        }
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * The mapping is released by the garbage collector, the file can be deleted before it on POSIX file systems.
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    int size() {
+        return position / RECORD_SIZE;
+    }
+
+    boolean isEmpty() {
+        return position == 0;
+    }
+
+    private void recover() {
+        while (position + RECORD_SIZE <= buffer.capacity() && buffer.getInt(position + PAYLOAD_SIZE) == checksum(position)) {
+            index(buffer.getLong(position), buffer.getLong(position + 8), position);
+            position += RECORD_SIZE;
+        }
+    }
+
+    private void index(long stockId, long time, int offset) {
+        offsetsByStock.computeIfAbsent(stockId, id -> new Offsets()).add(offset, time);
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+    }
+
+    private int firstAtOrAfter(Offsets offsets, long time) {
+        int low = 0;
+        int high = offsets.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getLong(offsets.values[middle] + 8) < time) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private int checksum(int offset) {
+        CRC32 crc = new CRC32();
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(offset).limit(offset + PAYLOAD_SIZE);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Offsets of the records of a stock in the segment, in order of append. Ordered while no record is older than the one before it.
+     */
+    private static class Offsets {
+        private int[] values = new int[4];
+        private int count;
+        private boolean ordered = true;
+        private long lastTime = Long.MIN_VALUE;
+
+        void add(int offset, long time) {
+            if (count == values.length) values = Arrays.copyOf(values, count * 2);
+            values[count++] = offset;
+            if (time < lastTime) ordered = false;
+            lastTime = Math.max(lastTime, time);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.stockp.repository.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only store of the price history of stocks, in memory-mapped segment files of history.segment-size-bytes.
+ * Appends go to the last segment, a new segment is started when it is full. Reads come from the mapped segments,
+ * every segment indexes its records by stock id and knows its time range, so a read skips segments out of the range.
+ * Segments older than history.retention-hours are deleted. On startup every segment is scanned to find its end, a record torn by a crash is dropped.
+ * The directory must be writable, otherwise the application does not start: a history that can not be appended is lost silently.
+ */
+@Repository
+public class PriceHistoryStore {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("history-(\\d{20})\\.seg");
+
+    private final Logger log = LoggerFactory.getLogger(PriceHistoryStore.class);
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final Duration retention;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Deque<PriceHistorySegment> segments = new ArrayDeque<>(); // the oldest first, the last one is active
+
+    public PriceHistoryStore(@Value("${history.directory}") String directory, @Value("${history.segment-size-bytes}") int segmentSize,
+                             @Value("${history.retention-hours}") long retentionHours) {
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize - segmentSize % PriceHistorySegment.RECORD_SIZE;
+        this.retention = Duration.ofHours(retentionHours);
+        if (this.segmentSize <= 0) {
+            throw new IllegalArgumentException("history.segment-size-bytes must hold one record at least: " + segmentSize);
+        }
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        if (!Files.isWritable(directory)) {
+            throw new IllegalStateException("history.directory is not writable! directory: " + directory.toAbsolutePath());
+        }
+        Map<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.forEach(path -> {
+                Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) files.put(Long.parseLong(matcher.group(1)), path);
+            });
+        }
+        for (Map.Entry<Long, Path> file : files.entrySet()) {
+            segments.addLast(PriceHistorySegment.open(file.getKey(), file.getValue(), segmentSize));
+        }
+        if (segments.isEmpty()) {
+            roll();
+        }
+        log.info("#Price history is opened. directory: {}, segments: {}, records: {}", directory.toAbsolutePath(), segments.size(),
+                segments.stream().mapToLong(PriceHistorySegment::size).sum());
+    }
+
+    public void append(long stockId, Date time, Long price) {
+        lock.writeLock().lock();
+        try {
+            if (!segments.getLast().append(stockId, time.getTime(), price)) {
+                roll();
+                segments.getLast().append(stockId, time.getTime(), price);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Prices of the stock between from and to (inclusive), in order of time. At most limit prices, the oldest ones.
+     * Only the limit oldest prices read so far are kept, and a segment stops its read at a price later than all of them,
+     * so a wide range reads about limit prices whatever the length of the history. A commit appended out of order still finds its place.
+     */
+    public List<PricePoint> find(long stockId, Date from, Date to, int limit) {
+        OldestPrices oldest = new OldestPrices(limit);
+        lock.readLock().lock();
+        try {
+            for (PriceHistorySegment segment : segments) {
+                segment.read(stockId, from.getTime(), to.getTime(), oldest::until, oldest::offer);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return oldest.toList();
+    }
+
+    @Scheduled(initialDelayString = "${history.retention-check-interval-ms}", fixedDelayString = "${history.retention-check-interval-ms}")
+    public void applyRetention() {
+        long oldest = System.currentTimeMillis() - retention.toMillis();
+        List<PriceHistorySegment> expired = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            while (segments.size() > 1 && segments.getFirst().getMaxTime() < oldest) {
+                expired.add(segments.removeFirst());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (PriceHistorySegment segment : expired) {
+            try {
+                segment.delete();
+            } catch (IOException ex) {
+                log.error("#Expired segment of price history could not be deleted. sequence: {}, reason: {}", segment.getSequence(), ex.getMessage());
+            }
+        }
+        if (!expired.isEmpty()) log.debug("#Expired segments of price history are deleted. segments: {}",
+                expired.stream().map(PriceHistorySegment::getSequence).collect(Collectors.toList()));
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            segments.forEach(PriceHistorySegment::force);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The limit oldest prices offered, a price of an equal time keeps its order of append. The latest kept price is on top of the heap.
+     */
+    private static class OldestPrices {
+        private final int limit;
+        private final PriorityQueue<Candidate> heap;
+        private long appended;
+
+        OldestPrices(int limit) {
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(limit + 1, Comparator.comparingLong((Candidate candidate) -> candidate.time)
+                    .thenComparingLong(candidate -> candidate.order).reversed());
+        }
+
+        void offer(PricePoint point) {
+            heap.add(new Candidate(point, appended++));
+            if (heap.size() > limit) heap.poll();
+        }
+
+        /**
+         * A later price can not be kept anymore.
+         */
+        long until() {
+            if (limit <= 0) return Long.MIN_VALUE;
+            return heap.size() < limit ? Long.MAX_VALUE : heap.peek().time;
+        }
+
+        List<PricePoint> toList() {
+            List<Candidate> candidates = new ArrayList<>(heap);
+            candidates.sort(heap.comparator().reversed());
+            return candidates.stream().map(candidate -> candidate.point).collect(Collectors.toList());
+        }
+    }
+
+    private static class Candidate {
+        private final PricePoint point;
+        private final long time;
+        private final long order;
+
+        Candidate(PricePoint point, long order) {
+            this.point = point;
+            this.time = point.getTimestamp().getTime();
+            this.order = order;
+        }
+    }
+
+    private void roll() {
+        long sequence = 0;
+        if (!segments.isEmpty()) {
+            segments.getLast().force();
+            sequence = segments.getLast().getSequence() + 1;
+        }
+        Path path = directory.resolve(String.format("history-%020d.seg", sequence));
+        try {
+            segments.addLast(PriceHistorySegment.open(sequence, path, segmentSize));
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Segment of price history could not be created: " + path, ex);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.stockp.repository.history;
+
+import lombok.Value;
+
+import java.util.Date;
+
+/**
+ * A price of a stock at a time, as it is stored in the price history.
+ */
+@Value
+public class PricePoint {
+
+    long stockId;
+
+    Date timestamp;
+
+    Long price;
+}
@@ -0,0 +1,20 @@
+package com.example.stockp.service;
+
+import com.example.stockp.service.dto.KeysetSliceDto;
+import com.example.stockp.service.dto.PricePointDto;
+
+import java.util.Date;
+
+/**
+ * Service Interface for the price history of Stocks
+ */
+public interface PriceHistoryService {
+
+    /**
+     * Prices of the stock between from and to (inclusive), in order of time.
+     * A null from is the beginning of the history, a null to is now.
+     * At most history.max-points prices, the oldest ones. If there are more, nextCursor is the time (ISO-8601) of the first price left out,
+     * the from of the next request. Prices of that millisecond that were returned are returned again.
+     */
+    KeysetSliceDto<PricePointDto> findHistory(Long id, Date from, Date to);
+}
@@ -0,0 +1,34 @@
+package com.example.stockp.service;
+
+import com.example.stockp.service.dto.BatchResultDto;
+import com.example.stockp.service.dto.StockDto;
+
+import java.util.List;
+
+/**
+ * Service Interface for managing Stocks in bulk
+ */
+public interface StockBatchService {
+
+    /**
+     * Create all stocks. A failed item does not abort the others, the result of every item is reported in the order of the request.
+     */
+    List<BatchResultDto> saveAll(List<StockDto> stockDtos);
+
+    /**
+     * Create all stocks, transactionSize stocks per transaction. There is no limit on the number of stocks, it is for imports.
+     */
+    List<BatchResultDto> saveAll(List<StockDto> stockDtos, int transactionSize);
+
+    /**
+     * Partially update all stocks in one transaction, just the given fields of every dto are written (like partialUpdate).
+     * The stocks are read by IN queries and written by jdbc batches of UPDATEs. A failed item does not abort the others.
+     */
+    List<BatchResultDto> updateAll(List<StockDto> stockDtos);
+
+    /**
+     * Delete all stocks in one transaction. The stocks are read by IN queries and deleted by jdbc batches of DELETEs.
+     * A missing stock does not abort the others.
+     */
+    List<BatchResultDto> deleteAll(List<Long> ids);
+}
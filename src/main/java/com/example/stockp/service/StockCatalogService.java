@@ -0,0 +1,28 @@
+package com.example.stockp.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Service Interface for the catalog of all Stocks, kept ready for bulk consumers.
+ */
+public interface StockCatalogService {
+
+    String MEDIA_TYPE = "application/x-ndjson";
+
+    @Getter
+    @AllArgsConstructor
+    class Snapshot {
+        private final byte[] gzip; // NDJSON, one line per stock in order of id
+        private final String eTag;
+        private final long stocks;
+        private final long generation;
+        private final long createdAtMillis;
+    }
+
+    /**
+     * The current snapshot of the catalog, it may be stale by catalog.min-rebuild-interval-ms and the time to make it.
+     * It is made again in the background when a stock is changed after it, or when it is older than catalog.max-age-ms.
+     */
+    Snapshot snapshot();
+}
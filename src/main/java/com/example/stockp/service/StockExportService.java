@@ -0,0 +1,39 @@
+package com.example.stockp.service;
+
+import com.example.stockp.exception.BadRequestException;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Service Interface for exporting all Stocks
+ */
+public interface StockExportService {
+
+    @Getter
+    enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String mediaType;
+        private final String extension;
+
+        Format(String mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public static Format of(String extension) {
+            return Arrays.stream(values()).filter(format -> format.extension.equalsIgnoreCase(extension)).findFirst()
+                    .orElseThrow(() -> new BadRequestException("format must be ndjson or csv. actual: " + extension));
+        }
+    }
+
+    /**
+     * Write every stock to out, one line per stock, as it is read from the database.
+     * With more than one worker the id range is split between them and the lines come in no particular order.
+     */
+    void export(Format format, int workers, OutputStream out) throws IOException;
+}
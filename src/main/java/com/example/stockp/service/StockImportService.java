@@ -0,0 +1,39 @@
+package com.example.stockp.service;
+
+import com.example.stockp.exception.BadRequestException;
+import com.example.stockp.service.dto.ImportResultDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Service Interface for importing Stocks from a file
+ */
+public interface StockImportService {
+
+    enum Format {
+        CSV,
+        JSON; // an array of stocks or a stock per line (NDJSON)
+
+        /**
+         * @param name a file name or a media type
+         */
+        public static Format of(String name) {
+            if (name == null) {
+                throw new BadRequestException("Format of import is unknown!");
+            }
+            String lowerCase = name.toLowerCase();
+            if (lowerCase.endsWith("csv")) return CSV;
+            if (lowerCase.endsWith("json")) return JSON;
+            throw new BadRequestException("Format of import must be csv, json or ndjson. actual: " + name);
+        }
+    }
+
+    /**
+     * Create the stocks of the stream as it is read. An id in a row is ignored, the name identifies a stock.
+     * A row that is invalid or whose name exists is rejected, it does not abort the import.
+     *
+     * @throws BadRequestException if the stream is not a CSV or JSON of stocks
+     */
+    ImportResultDto importStocks(InputStream in, Format format) throws IOException;
+}
@@ -0,0 +1,17 @@
+package com.example.stockp.service;
+
+import com.example.stockp.service.dto.StockMatchDto;
+
+import java.util.List;
+
+/**
+ * Service Interface for searching Stocks by name
+ */
+public interface StockSearchService {
+
+    /**
+     * At most limit stocks whose name starts with the query, in order of name, then stocks whose name is similar to it (typos), most similar first.
+     * It is served by an in memory index, the database is not touched.
+     */
+    List<StockMatchDto> search(String query, int limit);
+}
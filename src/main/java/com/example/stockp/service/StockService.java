@@ -1,9 +1,14 @@
 package com.example.stockp.service;
 
 import com.example.stockp.exception.StockNotFoundException;
+import com.example.stockp.service.dto.KeysetSliceDto;
 import com.example.stockp.service.dto.StockDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Service Interface for managing Stock
@@ -14,11 +19,60 @@ public interface StockService {
 
     StockDto update(StockDto stockDto);
 
+    /**
+     * Compare-and-set update: the UPDATE is conditional on expectedVersion (If-Match), it throws PreconditionFailedException on a conflict.
+     * A null expectedVersion updates any version.
+     */
+    StockDto update(StockDto stockDto, Long expectedVersion);
+
     StockDto partialUpdate(StockDto stockDto);
 
+    /**
+     * Like update, just the given fields of dto are written.
+     */
+    StockDto partialUpdate(StockDto stockDto, Long expectedVersion);
+
+    /**
+     * The total of the page comes from the in memory stock counter, the database is not counted.
+     */
     Page<StockDto> findAll(Pageable pageable);
 
+    /**
+     * A page without total.
+     */
+    Slice<StockDto> findSlice(Pageable pageable);
+
+    /**
+     * Keyset pagination. after is the cursor of the previous page, empty for the first page.
+     * order (id, current_price or last_update) and direction (asc or desc) are used just for the first page, next cursors carry them.
+     */
+    KeysetSliceDto<StockDto> findAllAfter(String after, String order, String direction, int size);
+
+    /**
+     * An id that the id filter knows is missing is not found without a query.
+     */
     StockDto findOne(Long id) throws StockNotFoundException;
 
+    /**
+     * Find the stocks of the ids in the order of the ids, a repeated id is returned once and a missing stock is left out.
+     * Stocks of the second level cache are not read again, the others are read by IN queries of multi-get.batch-size ids.
+     */
+    List<StockDto> findAllById(List<Long> ids);
+
+    /**
+     * Find a stock by its exact name. The id comes from the in memory name index, the stock is read by id from the second level cache.
+     */
+    StockDto findByName(String name) throws StockNotFoundException;
+
+    /**
+     * ETag of the stock, it is read by a projection of id and version, the stock is not loaded. Empty if the stock does not exist.
+     */
+    Optional<String> findETag(Long id);
+
+    /**
+     * ETag of a page of findAll (total is true) or of findSlice (total is false), it is read by a projection of id and version.
+     */
+    String findPageETag(Pageable pageable, boolean total);
+
     void delete(Long id);
 }
@@ -0,0 +1,17 @@
+package com.example.stockp.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Set;
+
+/**
+ * Service Interface for streaming changes of Stocks to subscribers by Server-Sent Events
+ */
+public interface StockStreamService {
+
+    /**
+     * Subscribe to the stocks. The current state of every existing stock is sent first, then every committed change of them:
+     * a "stock" event with the StockDto, or a "delete" event with the id.
+     */
+    SseEmitter subscribe(Set<Long> ids);
+}
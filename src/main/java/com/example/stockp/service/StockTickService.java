@@ -0,0 +1,26 @@
+package com.example.stockp.service;
+
+import com.example.stockp.service.dto.TickDto;
+
+import java.util.List;
+
+/**
+ * Service Interface for ingesting price ticks of Stocks
+ */
+public interface StockTickService {
+
+    /**
+     * Buffer the ticks, only the latest tick of each stock survives until the next flush.
+     *
+     * @return the number of accepted ticks
+     * @throws com.example.stockp.exception.TooManyRequestsException if the buffer is full
+     */
+    int accept(List<TickDto> ticks);
+
+    /**
+     * Write the buffered prices to the database.
+     *
+     * @return the number of updated stocks
+     */
+    int flush();
+}
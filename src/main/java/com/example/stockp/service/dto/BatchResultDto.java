@@ -0,0 +1,29 @@
+package com.example.stockp.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.gson.annotations.SerializedName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The result of one item of a batch request. index is the position of the item in the request.
+ * error_code is 0 if the item is done successfully, otherwise it is the same error code a single request gets.
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "result of an item of a batch request")
+public class BatchResultDto {
+
+    private int index;
+
+    @JsonProperty("error_code")
+    @SerializedName("error_code")
+    private int errorCode;
+
+    private String message;
+
+    private StockDto stock;
+}
@@ -0,0 +1,34 @@
+package com.example.stockp.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.gson.annotations.SerializedName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The result of an import. errors has the first rejected rows, index of an error is the number of its row (1 is the first row after a header).
+ */
+@Data
+@Builder
+@Schema(description = "result of an import of stocks")
+public class ImportResultDto {
+
+    private long rows;
+
+    private long created;
+
+    private long rejected;
+
+    @JsonProperty("elapsed_ms")
+    @SerializedName("elapsed_ms")
+    private long elapsedMs;
+
+    @JsonProperty("rows_per_second")
+    @SerializedName("rows_per_second")
+    private long rowsPerSecond;
+
+    private List<BatchResultDto> errors;
+}
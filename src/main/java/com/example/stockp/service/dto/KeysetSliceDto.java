@@ -0,0 +1,22 @@
+package com.example.stockp.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A page of keyset pagination. nextCursor is the opaque position of the next page, it is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+public class KeysetSliceDto<T> {
+
+    private List<T> content;
+
+    private String nextCursor;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.stockp.service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * A price of a stock at a time, from its price history.
+ */
+@Data
+@Builder
+@Schema(description = "price of a stock at a time")
+public class PricePointDto {
+
+    private Long price;
+
+    private Date timestamp;
+}
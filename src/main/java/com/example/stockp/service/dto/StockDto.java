@@ -32,4 +32,7 @@ public class StockDto {
     @SerializedName("last_update")
     private Date lastUpdate;
 
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY) // it is written by the database, a client sends it back in If-Match as the ETag
+    private Long version;
+
 }
@@ -0,0 +1,24 @@
+package com.example.stockp.service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A stock found by a search of its name.
+ */
+@Data
+@Builder
+@Schema(description = "stock found by a search of its name")
+public class StockMatchDto {
+
+    private Long id;
+
+    private String name;
+
+    @Schema(description = "prefix if the name starts with the query, fuzzy if it is similar to the query")
+    private String match;
+
+    @Schema(description = "the length of the query to the length of the name for a prefix, similarity of trigrams for fuzzy. 1 is an exact match")
+    private Double score;
+}
@@ -0,0 +1,29 @@
+package com.example.stockp.service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * A price change of a stock from the market feed. The stock is found by id, or by name if id is null.
+ * timestamp is the time of the change at the source, it is set to the time of receipt if it is null.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "price tick of a stock")
+public class TickDto {
+
+    private Long id;
+
+    private String name;
+
+    private Long price;
+
+    private Date timestamp;
+}
@@ -0,0 +1,92 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.entity.Stock;
+import com.example.stockp.repository.history.PriceHistoryStore;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.Date;
+
+/**
+ * Appends every committed price of a stock to the price history. Hibernate calls it after the commit,
+ * so it sees every path of writing (single, batch, ticks) and a rolled back price is never recorded.
+ */
+@Component
+public class PriceHistoryRecorder implements PostCommitInsertEventListener, PostCommitUpdateEventListener {
+
+    private static final String CURRENT_PRICE = "currentPrice";
+
+    private final Logger log = LoggerFactory.getLogger(PriceHistoryRecorder.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final PriceHistoryStore priceHistoryStore;
+
+    public PriceHistoryRecorder(EntityManagerFactory entityManagerFactory, PriceHistoryStore priceHistoryStore) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.priceHistoryStore = priceHistoryStore;
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Stock) record((Stock) event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Stock && isPriceChanged(event)) record((Stock) event.getEntity());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // nothing is recorded before the commit
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // nothing is recorded before the commit
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return Stock.class.getName().equals(persister.getEntityName());
+    }
+
+    private void record(Stock stock) {
+        try {
+            priceHistoryStore.append(stock.getId(), stock.getLastUpdate() == null ? new Date() : stock.getLastUpdate(), stock.getCurrentPrice());
+        } catch (RuntimeException ex) {
+            // the stock is committed already, losing a point of history must not fail the request
+            log.error("#Price could not be appended to the price history. id: {}, reason: {}", stock.getId(), ex.getMessage());
+        }
+    }
+
+    private boolean isPriceChanged(PostUpdateEvent event) {
+        int[] dirtyProperties = event.getDirtyProperties();
+        if (dirtyProperties == null) return true; // unknown, e.g. an update without a snapshot
+        String[] names = event.getPersister().getPropertyNames();
+        for (int property : dirtyProperties) {
+            if (CURRENT_PRICE.equals(names[property])) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.exception.BadRequestException;
+import com.example.stockp.repository.history.PriceHistoryStore;
+import com.example.stockp.repository.history.PricePoint;
+import com.example.stockp.service.PriceHistoryService;
+import com.example.stockp.service.dto.KeysetSliceDto;
+import com.example.stockp.service.dto.PricePointDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Service Implementation for the price history of Stocks. It reads the history store only, not the database.
+ */
+@Service
+public class PriceHistoryServiceImpl implements PriceHistoryService {
+
+    private final Logger log = LoggerFactory.getLogger(PriceHistoryServiceImpl.class);
+
+    private final PriceHistoryStore priceHistoryStore;
+
+    private final int maxPoints;
+
+    public PriceHistoryServiceImpl(PriceHistoryStore priceHistoryStore, @Value("${history.max-points}") int maxPoints) {
+        this.priceHistoryStore = priceHistoryStore;
+        this.maxPoints = maxPoints;
+    }
+
+    @Override
+    public KeysetSliceDto<PricePointDto> findHistory(Long id, Date from, Date to) {
+        log.debug("#Request to get price history of Stock : {}, from: {}, to: {}", id, from, to);
+        Date start = from == null ? new Date(0) : from;
+        Date end = to == null ? new Date() : to;
+        if (start.after(end)) {
+            throw new BadRequestException("from must not be after to! from: " + start + " to: " + end);
+        }
+        List<PricePoint> points = priceHistoryStore.find(id, start, end, maxPoints + 1); // one more tells it is truncated
+        String nextCursor = points.size() > maxPoints
+                ? DateTimeFormatter.ISO_INSTANT.format(points.get(maxPoints).getTimestamp().toInstant()) : null;
+        return new KeysetSliceDto<>(points.stream().limit(maxPoints)
+                .map(point -> PricePointDto.builder().price(point.getPrice()).timestamp(point.getTimestamp()).build())
+                .collect(Collectors.toList()), nextCursor);
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.entity.Stock;
+import com.example.stockp.exception.BadRequestException;
+import com.example.stockp.repository.StockRepository;
+import com.example.stockp.service.StockBatchService;
+import com.example.stockp.service.dto.BatchResultDto;
+import com.example.stockp.service.dto.StockDto;
+import com.example.stockp.service.mapper.StockMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Service Implementation for managing Stocks in bulk.
+ * Items are inserted in chunks, every chunk in its own transaction. A chunk of a REST request is the jdbc batch size.
+ * Names are checked against the database before each chunk, so a conflict on UNQ_STO_NAME is reported for the item and does not poison the chunk.
+ * Updates and deletes load the stocks by IN queries (hits of the second level cache are not read) and change them in one transaction,
+ * hibernate writes them by jdbc batches. They are not bulk statements, so the events of every stock (history, stream, indexes, caches) are published.
+ * If the transaction fails (a concurrent writer), its items are retried one by one.
+ */
+@Service
+public class StockBatchServiceImpl implements StockBatchService {
+
+    private final Logger log = LoggerFactory.getLogger(StockBatchServiceImpl.class);
+
+    private final StockRepository stockRepository;
+
+    private final StockMapper stockMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Validator validator;
+
+    private final int batchSize;
+
+    private final int maxItems;
+
+    public StockBatchServiceImpl(StockRepository stockRepository, StockMapper stockMapper, TransactionTemplate transactionTemplate, Validator validator,
+                                 @Value("${batch.size}") int batchSize, @Value("${batch.max-items}") int maxItems) {
+        this.stockRepository = stockRepository;
+        this.stockMapper = stockMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.maxItems = maxItems;
+    }
+
+    @Override
+    public List<BatchResultDto> saveAll(List<StockDto> stockDtos) {
+        log.debug("#Request to save a batch of Stocks. size: {}", stockDtos.size());
+        checkSize(stockDtos);
+        return saveAll(stockDtos, batchSize);
+    }
+
+    @Override
+    public List<BatchResultDto> saveAll(List<StockDto> stockDtos, int transactionSize) {
+        BatchResultDto[] results = new BatchResultDto[stockDtos.size()];
+        Set<String> namesOfRequest = new HashSet<>();
+        List<Integer> candidates = new ArrayList<>();
+        for (int index = 0; index < stockDtos.size(); index++) {
+            StockDto stockDto = stockDtos.get(index);
+            BatchResultDto rejected = validate(index, stockDto);
+            if (rejected == null && !namesOfRequest.add(stockDto.getName())) {
+                rejected = conflict(index, stockDto);
+            }
+            if (rejected != null) results[index] = rejected;
+            else candidates.add(index);
+        }
+        for (int from = 0; from < candidates.size(); from += transactionSize) {
+            List<Integer> chunk = candidates.subList(from, Math.min(from + transactionSize, candidates.size()));
+            saveChunk(chunk, stockDtos, results);
+        }
+        return Arrays.asList(results);
+    }
+
+    private void saveChunk(List<Integer> chunk, List<StockDto> stockDtos, BatchResultDto[] results) {
+        Set<String> existingNames = new HashSet<>(stockRepository.findExistingNames(
+                chunk.stream().map(index -> stockDtos.get(index).getName()).collect(Collectors.toList())));
+        List<Integer> toInsert = new ArrayList<>();
+        for (Integer index : chunk) {
+            if (existingNames.contains(stockDtos.get(index).getName())) results[index] = conflict(index, stockDtos.get(index));
+            else toInsert.add(index);
+        }
+        if (toInsert.isEmpty()) return;
+        try {
+            List<Stock> saved = transactionTemplate.execute(ts -> stockRepository.saveAll(
+                    toInsert.stream().map(index -> stockMapper.toEntity(stockDtos.get(index))).collect(Collectors.toList())));
+            for (int i = 0; i < toInsert.size(); i++) {
+                results[toInsert.get(i)] = created(toInsert.get(i), saved.get(i));
+            }
+        } catch (DataIntegrityViolationException ex) {
+            // A concurrent writer took a name after the check. Isolate the offenders one by one.
+            log.debug("#Chunk of batch failed, retrying its items one by one. reason: {}", ex.getMessage());
+            for (Integer index : toInsert) {
+                try {
+                    Stock stock = transactionTemplate.execute(ts -> stockRepository.save(stockMapper.toEntity(stockDtos.get(index))));
+                    results[index] = created(index, stock);
+                } catch (DataIntegrityViolationException e) {
+                    results[index] = conflict(index, stockDtos.get(index));
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<BatchResultDto> updateAll(List<StockDto> stockDtos) {
+        log.debug("#Request to update a batch of Stocks. size: {}", stockDtos.size());
+        checkSize(stockDtos);
+        BatchResultDto[] results = new BatchResultDto[stockDtos.size()];
+        Set<Long> idsOfRequest = new HashSet<>();
+        Set<String> namesOfRequest = new HashSet<>();
+        List<Integer> candidates = new ArrayList<>();
+        for (int index = 0; index < stockDtos.size(); index++) {
+            StockDto stockDto = stockDtos.get(index);
+            BatchResultDto rejected = validateUpdate(index, stockDto, idsOfRequest);
+            if (rejected == null && stockDto.getName() != null && !namesOfRequest.add(stockDto.getName())) {
+                rejected = conflict(index, stockDto);
+            }
+            if (rejected != null) results[index] = rejected;
+            else candidates.add(index);
+        }
+        writeAll(candidates, results, indexes -> updateChunk(indexes, stockDtos, results));
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public List<BatchResultDto> deleteAll(List<Long> ids) {
+        log.debug("#Request to delete a batch of Stocks. size: {}", ids.size());
+        checkSize(ids);
+        BatchResultDto[] results = new BatchResultDto[ids.size()];
+        Set<Long> idsOfRequest = new HashSet<>();
+        List<Integer> candidates = new ArrayList<>();
+        for (int index = 0; index < ids.size(); index++) {
+            Long id = ids.get(index);
+            if (id == null) results[index] = BatchResultDto.builder().index(index).errorCode(4001).message("#id is null!").build();
+            else if (!idsOfRequest.add(id)) results[index] = repeated(index, id);
+            else candidates.add(index);
+        }
+        writeAll(candidates, results, indexes -> deleteChunk(indexes, ids, results));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Write the items in one transaction. If it fails, every item is written in its own transaction, so only the offenders fail.
+     */
+    private void writeAll(List<Integer> candidates, BatchResultDto[] results, Consumer<List<Integer>> writer) {
+        if (candidates.isEmpty()) return;
+        try {
+            transactionTemplate.executeWithoutResult(ts -> writer.accept(candidates));
+        } catch (DataIntegrityViolationException | OptimisticLockingFailureException ex) {
+            log.debug("#Transaction of batch failed, retrying its items one by one. reason: {}", ex.getMessage());
+            for (Integer index : candidates) {
+                try {
+                    transactionTemplate.executeWithoutResult(ts -> writer.accept(List.of(index)));
+                } catch (DataIntegrityViolationException e) {
+                    results[index] = BatchResultDto.builder().index(index).errorCode(4005).message("#Unique index violation! UNQ_STO_NAME").build();
+                } catch (OptimisticLockingFailureException e) {
+                    results[index] = BatchResultDto.builder().index(index).errorCode(4090).message("#Stock is changed by another request!").build();
+                }
+            }
+        }
+    }
+
+    private void updateChunk(List<Integer> indexes, List<StockDto> stockDtos, BatchResultDto[] results) {
+        List<Stock> stocks = stockRepository.findAllByIdInOrder(
+                indexes.stream().map(index -> stockDtos.get(index).getId()).collect(Collectors.toList()), batchSize);
+        Set<String> newNames = indexes.stream().map(index -> stockDtos.get(index).getName()).filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<String> existingNames = newNames.isEmpty() ? Collections.emptySet() : new HashSet<>(stockRepository.findExistingNames(newNames));
+        Date now = new Date();
+        List<Integer> updated = new ArrayList<>();
+        for (int i = 0; i < indexes.size(); i++) {
+            int index = indexes.get(i);
+            StockDto stockDto = stockDtos.get(index);
+            Stock stock = stocks.get(i);
+            if (stock == null) {
+                results[index] = notFound(index, stockDto.getId());
+            } else if (stockDto.getName() != null && !stockDto.getName().equals(stock.getName()) && existingNames.contains(stockDto.getName())) {
+                results[index] = conflict(index, stockDto);
+            } else {
+                stockMapper.partialUpdate(stock, stockDto);
+                stock.setLastUpdate(now);
+                updated.add(i);
+            }
+        }
+        stockRepository.flush(); // the UPDATEs are issued here, so the results have the new versions
+        for (Integer i : updated) {
+            results[indexes.get(i)] = BatchResultDto.builder().index(indexes.get(i)).message("Updated").stock(stockMapper.toDto(stocks.get(i))).build();
+        }
+    }
+
+    private void deleteChunk(List<Integer> indexes, List<Long> ids, BatchResultDto[] results) {
+        List<Stock> stocks = stockRepository.findAllByIdInOrder(indexes.stream().map(ids::get).collect(Collectors.toList()), batchSize);
+        List<Stock> deleted = new ArrayList<>();
+        for (int i = 0; i < indexes.size(); i++) {
+            int index = indexes.get(i);
+            Stock stock = stocks.get(i);
+            if (stock == null) {
+                results[index] = notFound(index, ids.get(index));
+            } else {
+                deleted.add(stock);
+                results[index] = BatchResultDto.builder().index(index).message("Deleted").stock(stockMapper.toDto(stock)).build();
+            }
+        }
+        stockRepository.deleteAll(deleted); // the stocks are managed, they are not read again
+        stockRepository.flush();
+    }
+
+    private void checkSize(List<?> items) {
+        if (items.isEmpty()) {
+            throw new BadRequestException("Batch is empty!");
+        }
+        if (items.size() > maxItems) {
+            throw new BadRequestException("Batch is too large! max items is: " + maxItems + " actual size is: " + items.size());
+        }
+    }
+
+    private BatchResultDto validateUpdate(int index, StockDto stockDto, Set<Long> idsOfRequest) {
+        if (stockDto == null) {
+            return BatchResultDto.builder().index(index).errorCode(4001).message("#Stock is null!").build();
+        }
+        if (stockDto.getId() == null) {
+            return BatchResultDto.builder().index(index).errorCode(4001).stock(stockDto).message("#id is null! Dto must have an id.").build();
+        }
+        if (!idsOfRequest.add(stockDto.getId())) {
+            return repeated(index, stockDto.getId());
+        }
+        if (stockDto.getName() != null) { // a partial update, just the given name is validated
+            Set<ConstraintViolation<StockDto>> violations = validator.validateProperty(stockDto, "name");
+            if (!violations.isEmpty()) {
+                String message = violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(" "));
+                return BatchResultDto.builder().index(index).errorCode(4009).stock(stockDto).message(message).build();
+            }
+        }
+        return null;
+    }
+
+    private BatchResultDto repeated(int index, Long id) {
+        return BatchResultDto.builder().index(index).errorCode(4001).message("#id is repeated in the batch! id: " + id).build();
+    }
+
+    private BatchResultDto notFound(int index, Long id) {
+        return BatchResultDto.builder().index(index).errorCode(4040).message("Could not find the stock: " + id).build();
+    }
+
+    private BatchResultDto validate(int index, StockDto stockDto) {
+        if (stockDto == null) {
+            return BatchResultDto.builder().index(index).errorCode(4001).message("#Stock is null!").build();
+        }
+        if (stockDto.getId() != null) {
+            return BatchResultDto.builder().index(index).errorCode(4001).stock(stockDto)
+                    .message("ID exist. A new stock cannot already have an ID! id is: " + stockDto.getId()).build();
+        }
+        Set<ConstraintViolation<StockDto>> violations = validator.validate(stockDto);
+        if (!violations.isEmpty()) {
+            String message = violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(" "));
+            return BatchResultDto.builder().index(index).errorCode(4009).stock(stockDto).message(message).build();
+        }
+        return null;
+    }
+
+    private BatchResultDto conflict(int index, StockDto stockDto) {
+        return BatchResultDto.builder().index(index).errorCode(4005).stock(stockDto)
+                .message("#Unique index violation! UNQ_STO_NAME name: " + stockDto.getName()).build();
+    }
+
+    private BatchResultDto created(int index, Stock stock) {
+        return BatchResultDto.builder().index(index).message("Created").stock(stockMapper.toDto(stock)).build();
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.repository.StockRepository;
+import com.example.stockp.service.StockCatalogService;
+import com.example.stockp.service.mapper.StockMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service Implementation for the catalog of all Stocks.
+ * The catalog is NDJSON compressed by gzip once, every request of it sends the same bytes. A snapshot reads and maps every stock again,
+ * the JSON of a stock that is not changed is copied from {@link StockJsonCache}, then the whole catalog is compressed again.
+ * Changes are detected by the generation of the cache, changes the cache does not see (other instances) are bounded by catalog.max-age-ms.
+ * A stale snapshot is still served, a request that sees it schedules a new one on the catalog thread, at most one per
+ * catalog.min-rebuild-interval-ms. Only the first snapshot is made by a request, the others wait for it.
+ */
+@Service
+public class StockCatalogServiceImpl implements StockCatalogService {
+
+    private final Logger log = LoggerFactory.getLogger(StockCatalogServiceImpl.class);
+
+    private final StockRepository stockRepository;
+
+    private final StockMapper stockMapper;
+
+    private final ObjectMapper objectMapper;
+
+    private final StockJsonCache stockJsonCache;
+
+    private final int fetchSize;
+
+    private final long maxAgeMillis;
+
+    private final long minRebuildIntervalMillis;
+
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    private final ScheduledExecutorService rebuildExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Snapshot snapshot;
+
+    public StockCatalogServiceImpl(StockRepository stockRepository, StockMapper stockMapper, ObjectMapper objectMapper, StockJsonCache stockJsonCache,
+                                   @Value("${catalog.fetch-size}") int fetchSize, @Value("${catalog.max-age-ms}") long maxAgeMillis,
+                                   @Value("${catalog.min-rebuild-interval-ms}") long minRebuildIntervalMillis) {
+        this.stockRepository = stockRepository;
+        this.stockMapper = stockMapper;
+        this.objectMapper = objectMapper;
+        this.stockJsonCache = stockJsonCache;
+        this.fetchSize = fetchSize;
+        this.maxAgeMillis = maxAgeMillis;
+        this.minRebuildIntervalMillis = minRebuildIntervalMillis;
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = create();
+                    snapshot = current;
+                }
+            }
+        }
+        if (!isFresh(current)) scheduleRebuild(current);
+        return current;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    private void scheduleRebuild(Snapshot current) {
+        if (!rebuildScheduled.compareAndSet(false, true)) return;
+        long delayMillis = Math.max(0, current.getCreatedAtMillis() + minRebuildIntervalMillis - System.currentTimeMillis());
+        rebuildExecutor.schedule(() -> {
+            try {
+                snapshot = create();
+            } catch (RuntimeException ex) { // the stale snapshot is served, the next request schedules it again
+                log.error("#Catalog could not be made again. reason: {}", ex.getMessage());
+            } finally {
+                rebuildScheduled.set(false);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean isFresh(Snapshot current) {
+        return current != null && current.getGeneration() == stockJsonCache.generation()
+                && System.currentTimeMillis() - current.getCreatedAtMillis() < maxAgeMillis;
+    }
+
+    private Snapshot create() {
+        long startNanos = System.nanoTime();
+        long generation = stockJsonCache.generation(); // read first, a change while it is made makes it stale
+        long createdAtMillis = System.currentTimeMillis();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AtomicLong stocks = new AtomicLong();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(new GZIPOutputStream(bytes))) {
+            generator.setRootValueSeparator(null);
+            Long minId = stockRepository.findMinId();
+            Long maxId = stockRepository.findMaxId();
+            if (minId != null) {
+                stockRepository.scrollByIdBetween(minId, maxId, fetchSize, stock -> {
+                    try {
+                        objectMapper.writeValue(generator, stockMapper.toDto(stock));
+                        generator.writeRaw('\n');
+                        stocks.incrementAndGet();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Catalog could not be written", ex);
+        }
+        byte[] gzip = bytes.toByteArray();
+        String eTag = "\"" + DigestUtils.md5DigestAsHex(gzip) + "\"";
+        log.debug("#Catalog is created. stocks: {}, bytes: {}, generation: {}, elapsed ms: {}",
+                stocks.get(), gzip.length, generation, (System.nanoTime() - startNanos) / 1_000_000);
+        return new Snapshot(gzip, eTag, stocks.get(), generation, createdAtMillis);
+    }
+}
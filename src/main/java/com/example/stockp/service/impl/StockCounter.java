@@ -0,0 +1,134 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.entity.Stock;
+import com.example.stockp.repository.StockRepository;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory count of stocks, so totals of pagination do not need a COUNT(*) per request.
+ * It listens to every insert and delete of hibernate, so all paths of writing are counted.
+ * A change is pending until its transaction completes: it is kept by a resource of the transaction, so only that transaction sees it,
+ * and it is added to committed on commit and dropped on rollback.
+ * The committed count is reconciled with the database periodically, it corrects changes this instance could not see (native SQL, other instances).
+ */
+@Component
+public class StockCounter implements PostInsertEventListener, PostDeleteEventListener {
+
+    private final Logger log = LoggerFactory.getLogger(StockCounter.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final StockRepository stockRepository;
+
+    private final AtomicLong committed = new AtomicLong();
+
+    private final Object pendingKey = new Object(); // the resource of a transaction with its changes
+
+    public StockCounter(EntityManagerFactory entityManagerFactory, StockRepository stockRepository) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.stockRepository = stockRepository;
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    /**
+     * Committed stocks plus the changes of the transaction of the caller, changes of other running transactions are not counted.
+     */
+    public long total() {
+        AtomicLong pending = TransactionSynchronizationManager.isSynchronizationActive()
+                ? (AtomicLong) TransactionSynchronizationManager.getResource(pendingKey) : null;
+        return Math.max(0, committed.get() + (pending == null ? 0 : pending.get()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${counter.reconcile-interval-ms}", fixedDelayString = "${counter.reconcile-interval-ms}")
+    public void reconcile() {
+        long count = stockRepository.count();
+        long before = committed.getAndSet(count);
+        if (before != count) log.debug("#Stock counter is reconciled from {} to {}", before, count);
+    }
+
+    /**
+     * An insert (1) or a delete (-1) of a stock, pending until its transaction completes.
+     */
+    private void change(long delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            committed.addAndGet(delta);
+            return;
+        }
+        AtomicLong pending = (AtomicLong) TransactionSynchronizationManager.getResource(pendingKey);
+        if (pending == null) {
+            pending = new AtomicLong();
+            TransactionSynchronizationManager.bindResource(pendingKey, pending);
+            TransactionSynchronizationManager.registerSynchronization(new PendingSynchronization(pending));
+        }
+        pending.addAndGet(delta);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Stock) change(1);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Stock) change(-1);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * Unbinds the changes of its transaction while an inner transaction (REQUIRES_NEW) runs, and commits them with it.
+     */
+    private class PendingSynchronization implements TransactionSynchronization {
+        private final AtomicLong pending;
+
+        PendingSynchronization(AtomicLong pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(pendingKey, pending);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+            if (status == STATUS_COMMITTED) committed.addAndGet(pending.get());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.entity.Stock;
+import com.example.stockp.repository.StockRepository;
+import com.example.stockp.service.StockExportService;
+import com.example.stockp.service.mapper.StockMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Service Implementation for exporting all Stocks.
+ * Stocks are read through a server-side cursor of export.fetch-size rows and written as they are read, nothing holds the whole catalog.
+ * With more than one worker every worker reads its own id range and hands chunks of lines to the writer through a bounded queue,
+ * so memory stays flat: at most two chunks per worker are waiting for the client.
+ */
+@Service
+public class StockExportServiceImpl implements StockExportService {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final byte[] END_OF_RANGE = new byte[0];
+    private static final String CSV_HEADER = "id,name,current_price,last_update\n";
+
+    private final Logger log = LoggerFactory.getLogger(StockExportServiceImpl.class);
+
+    private final StockRepository stockRepository;
+
+    private final StockMapper stockMapper;
+
+    private final ObjectMapper objectMapper;
+
+    private final int fetchSize;
+
+    private final int maxWorkers;
+
+    private final ExecutorService exportExecutor;
+
+    public StockExportServiceImpl(StockRepository stockRepository, StockMapper stockMapper, ObjectMapper objectMapper,
+                                  @Value("${export.fetch-size}") int fetchSize, @Value("${export.max-workers}") int maxWorkers) {
+        this.stockRepository = stockRepository;
+        this.stockMapper = stockMapper;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        this.maxWorkers = maxWorkers;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.exportExecutor = Executors.newFixedThreadPool(maxWorkers, runnable -> {
+            Thread thread = new Thread(runnable, "export-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void export(Format format, int workers, OutputStream out) throws IOException {
+        int workerCount = Math.max(1, Math.min(workers, maxWorkers));
+        log.debug("#Request to export all Stocks. format: {}, workers: {}", format, workerCount);
+        if (format == Format.CSV) {
+            out.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+        }
+        Long minId = stockRepository.findMinId();
+        Long maxId = stockRepository.findMaxId();
+        if (minId != null) {
+            if (workerCount == 1) exportSequentially(format, minId, maxId, out);
+            else exportInParallel(format, workerCount, minId, maxId, out);
+        }
+        out.flush();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        exportExecutor.shutdownNow();
+    }
+
+    private void exportSequentially(Format format, long minId, long maxId, OutputStream out) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(out, CHUNK_SIZE);
+        try {
+            stockRepository.scrollByIdBetween(minId, maxId, fetchSize, stock -> {
+                try {
+                    buffered.write(toLine(format, stock));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause(); // the client is gone
+        }
+        buffered.flush();
+    }
+
+    private void exportInParallel(Format format, int workerCount, long minId, long maxId, OutputStream out) throws IOException {
+        BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(workerCount * 2);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        long span = (maxId - minId) / workerCount + 1;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int worker = 0; worker < workerCount; worker++) {
+            long fromId = minId + worker * span;
+            long toId = Math.min(maxId, fromId + span - 1);
+            futures.add(exportExecutor.submit(() -> exportRange(format, fromId, toId, chunks, cancelled, failure)));
+        }
+        try {
+            int finished = 0;
+            while (finished < workerCount && failure.get() == null) {
+                byte[] chunk = chunks.poll(100, TimeUnit.MILLISECONDS);
+                if (chunk == END_OF_RANGE) finished++;
+                else if (chunk != null) out.write(chunk);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export is interrupted", ex);
+        } finally {
+            cancelled.set(true); // stops the workers if the client is gone
+            futures.forEach(future -> future.cancel(true));
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private void exportRange(Format format, long fromId, long toId, BlockingQueue<byte[]> chunks,
+                             AtomicBoolean cancelled, AtomicReference<RuntimeException> failure) {
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(CHUNK_SIZE + 256);
+        try {
+            stockRepository.scrollByIdBetween(fromId, toId, fetchSize, stock -> {
+                chunk.writeBytes(toLine(format, stock));
+                if (chunk.size() >= CHUNK_SIZE) {
+                    put(chunks, chunk.toByteArray(), cancelled);
+                    chunk.reset();
+                }
+            });
+            if (chunk.size() > 0) put(chunks, chunk.toByteArray(), cancelled);
+            put(chunks, END_OF_RANGE, cancelled);
+        } catch (CancellationException ex) {
+            log.debug("#Export of id range is cancelled. from: {}, to: {}", fromId, toId);
+        } catch (RuntimeException ex) {
+            log.error("#Export of id range failed. from: {}, to: {}, reason: {}", fromId, toId, ex.getMessage());
+            failure.compareAndSet(null, ex); // the writer stops, it does not wait for the end of this range
+        }
+    }
+
+    private void put(BlockingQueue<byte[]> chunks, byte[] chunk, AtomicBoolean cancelled) {
+        try {
+            while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (cancelled.get()) throw new CancellationException();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    private byte[] toLine(Format format, Stock stock) {
+        if (format == Format.CSV) {
+            String line = stock.getId() + "," + csvValue(stock.getName()) + "," + (stock.getCurrentPrice() == null ? "" : stock.getCurrentPrice())
+                    + "," + (stock.getLastUpdate() == null ? "" : stock.getLastUpdate().toInstant()) + "\n";
+            return line.getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(stockMapper.toDto(stock));
+            byte[] line = new byte[json.length + 1];
+            System.arraycopy(json, 0, line, 0, json.length);
+            line[json.length] = '\n';
+            return line;
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static String csvValue(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
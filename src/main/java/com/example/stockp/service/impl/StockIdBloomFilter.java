@@ -0,0 +1,76 @@
+package com.example.stockp.service.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of the ids of stocks: an id that was put is always found, an id that was not put is found with the false positive rate.
+ * The bits are sized for the expected ids, k bits of an id are the double hashing h1 + i * h2 of two halves of a 64 bit mix of the id.
+ * An id can not be removed. Readers and writers do not lock.
+ */
+class StockIdBloomFilter {
+
+    private static final int MAX_WORDS = 1 << 25; // 2^31 bits, 256MB, an index of a bit is a positive int
+
+    private final AtomicLongArray words;
+
+    private final long bits;
+
+    private final int hashes;
+
+    StockIdBloomFilter(long expectedIds, double falsePositiveRate) {
+        long n = Math.max(1, expectedIds);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(MAX_WORDS, Math.max(1, (m + 63) / 64));
+        this.words = new AtomicLongArray(words);
+        this.bits = words * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+    }
+
+    void put(long id) {
+        long hash = mix(id);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = index(h1 + i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = words.get(word)) & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                // another bit of the word is set meanwhile, try again
+            }
+        }
+    }
+
+    boolean mightContain(long id) {
+        long hash = mix(id);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = index(h1 + i * h2);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    long bitSize() {
+        return bits;
+    }
+
+    int hashes() {
+        return hashes;
+    }
+
+    private long index(int combined) {
+        return (combined & Integer.MAX_VALUE) % bits;
+    }
+
+    /**
+     * The finalizer of SplitMix64, ids of a sequence are spread over all 64 bits.
+     */
+    private static long mix(long id) {
+        long z = id + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
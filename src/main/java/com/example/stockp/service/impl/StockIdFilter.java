@@ -0,0 +1,208 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.entity.Stock;
+import com.example.stockp.repository.StockRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Negative lookup of stock ids, so a read of a missing id (e.g. by a scraper) does not load a stock.
+ * It is a {@link StockIdBloomFilter} of the ids built by a streaming scan on start-up and every id-filter.rebuild-interval-ms, on its own thread.
+ * Hibernate calls it on every insert: at the flush, so a transaction finds its own stock, and again after the commit, so a scan
+ * that started meanwhile does not miss it. A delete is not removed from the filter, the missing id goes to the database until the next scan drops it.
+ * An "absent" is answered without a query. Stocks inserted by other instances are added every id-filter.sync-interval-ms by the ids of stocks
+ * whose last update is after the previous sync minus id-filter.sync-overlap-ms, a range of the (LAST_UPDATE, ID) index.
+ * So a stock of another instance is found here after about one sync interval.
+ */
+@Component
+public class StockIdFilter implements PostCommitInsertEventListener, MeterBinder {
+
+    private final Logger log = LoggerFactory.getLogger(StockIdFilter.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final StockRepository stockRepository;
+
+    private final boolean enabled;
+
+    private final long expectedIds;
+
+    private final double falsePositiveRate;
+
+    private final int fetchSize;
+
+    private final long rebuildIntervalMs;
+
+    private final long syncIntervalMs;
+
+    private final long syncOverlapMs;
+
+    private final ScheduledExecutorService rebuildExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "id-filter-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile StockIdBloomFilter snapshot; // null until the first scan is done, every id might exist
+
+    private volatile StockIdBloomFilter building; // the filter of a running scan, inserts are put in it too
+
+    private long syncedAtMs; // start of the last scan or sync, guarded by this
+
+    private final AtomicLong absent = new AtomicLong();
+
+    private final AtomicLong maybe = new AtomicLong();
+
+    public StockIdFilter(EntityManagerFactory entityManagerFactory, StockRepository stockRepository,
+                         @Value("${id-filter.enabled}") boolean enabled, @Value("${id-filter.expected-ids}") long expectedIds,
+                         @Value("${id-filter.false-positive-rate}") double falsePositiveRate, @Value("${id-filter.fetch-size}") int fetchSize,
+                         @Value("${id-filter.rebuild-interval-ms}") long rebuildIntervalMs, @Value("${id-filter.sync-interval-ms}") long syncIntervalMs,
+                         @Value("${id-filter.sync-overlap-ms}") long syncOverlapMs) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.stockRepository = stockRepository;
+        this.enabled = enabled;
+        this.expectedIds = expectedIds;
+        this.falsePositiveRate = falsePositiveRate;
+        this.fetchSize = fetchSize;
+        this.rebuildIntervalMs = rebuildIntervalMs;
+        this.syncIntervalMs = syncIntervalMs;
+        this.syncOverlapMs = syncOverlapMs;
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+    }
+
+    /**
+     * @return false if the stock does not exist for sure, true if it might exist
+     */
+    public boolean mightExist(long id) {
+        StockIdBloomFilter current = snapshot;
+        if (current == null || current.mightContain(id)) {
+            maybe.incrementAndGet();
+            return true;
+        }
+        absent.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Removes the ids that do not exist for sure.
+     */
+    public void removeAbsent(Collection<Long> ids) {
+        ids.removeIf(id -> !mightExist(id));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleRebuilds() {
+        if (!enabled) return;
+        rebuildExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException ex) { // the next rebuild is still scheduled
+                log.error("#Build of the filter of stock ids failed, the previous one is kept. reason: {}", ex.getMessage());
+            }
+        }, 0, rebuildIntervalMs, TimeUnit.MILLISECONDS);
+        rebuildExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                sync();
+            } catch (RuntimeException ex) { // the next sync reads back from the last successful one
+                log.warn("#Sync of the filter of stock ids failed. reason: {}", ex.getMessage());
+            }
+        }, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * A full scan of the ids, it runs on the rebuild thread. Public for tests.
+     */
+    public synchronized void rebuild() {
+        if (!enabled) return;
+        long startNanos = System.nanoTime();
+        long startMs = System.currentTimeMillis();
+        StockIdBloomFilter filter = new StockIdBloomFilter(Math.max(expectedIds, 2 * stockRepository.count()), falsePositiveRate);
+        building = filter; // before the scan, a stock committed from now on is put by its event
+        Long minId = stockRepository.findMinId();
+        Long maxId = stockRepository.findMaxId();
+        if (minId != null) {
+            stockRepository.scrollByIdBetween(minId, maxId, fetchSize, stock -> filter.put(stock.getId()));
+        }
+        snapshot = filter;
+        building = null;
+        syncedAtMs = startMs;
+        log.info("#Filter of stock ids is built. max id: {}, bits: {}, hashes: {}, elapsed ms: {}", maxId, filter.bitSize(),
+                filter.hashes(), (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    /**
+     * Adds the stocks changed since the last scan or sync, the ones of other instances among them. It runs on the rebuild thread. Public for tests.
+     */
+    public synchronized void sync() {
+        StockIdBloomFilter current = snapshot;
+        if (current == null) return;
+        long startMs = System.currentTimeMillis();
+        List<Long> ids = stockRepository.findIdsUpdatedSince(new Date(syncedAtMs - syncOverlapMs));
+        ids.forEach(current::put);
+        syncedAtMs = startMs;
+        log.debug("#Filter of stock ids is synced. changed stocks: {}", ids.size());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("stock.id.filter.lookups", absent, AtomicLong::get).tag("result", "absent")
+                .description("Reads of stock ids answered by the filter").register(registry);
+        FunctionCounter.builder("stock.id.filter.lookups", maybe, AtomicLong::get).tag("result", "maybe").register(registry);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (!(event.getEntity() instanceof Stock)) return;
+        long id = ((Stock) event.getEntity()).getId();
+        StockIdBloomFilter current = snapshot;
+        if (current != null) current.put(id);
+        StockIdBloomFilter next = building;
+        if (next != null) next.put(id);
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // the id put at the flush stays, a false positive goes to the database
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return Stock.class.getName().equals(persister.getEntityName());
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.exception.BadRequestException;
+import com.example.stockp.service.StockBatchService;
+import com.example.stockp.service.StockImportService;
+import com.example.stockp.service.dto.BatchResultDto;
+import com.example.stockp.service.dto.ImportResultDto;
+import com.example.stockp.service.dto.StockDto;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service Implementation for importing Stocks from a file.
+ * The file is parsed as a stream, JSON by the jackson streaming parser (no object binding) and CSV by a reader of RFC 4180 records,
+ * so only one chunk of import.chunk-size rows is in memory. Every chunk is created by {@link StockBatchService} in one transaction of jdbc batches,
+ * it validates the rows with the constraints of StockDto and rejects existing names.
+ * Progress and rows/sec are logged every import.progress-interval-rows rows.
+ */
+@Service
+public class StockImportServiceImpl implements StockImportService {
+
+    private static final int MAX_ERRORS = 100;
+
+    private final Logger log = LoggerFactory.getLogger(StockImportServiceImpl.class);
+
+    private final StockBatchService stockBatchService;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private final int chunkSize;
+
+    private final long progressIntervalRows;
+
+    public StockImportServiceImpl(StockBatchService stockBatchService, @Value("${import.chunk-size}") int chunkSize,
+                                  @Value("${import.progress-interval-rows}") long progressIntervalRows) {
+        this.stockBatchService = stockBatchService;
+        this.chunkSize = chunkSize;
+        this.progressIntervalRows = progressIntervalRows;
+    }
+
+    @Override
+    public ImportResultDto importStocks(InputStream in, Format format) throws IOException {
+        log.info("#Import of Stocks is started. format: {}", format);
+        ImportRun run = new ImportRun();
+        if (format == Format.CSV) readCsv(in, run);
+        else readJson(in, run);
+        run.flush();
+        ImportResultDto result = run.toResult();
+        log.info("#Import of Stocks is finished. rows: {}, created: {}, rejected: {}, elapsed ms: {}, rows/sec: {}",
+                result.getRows(), result.getCreated(), result.getRejected(), result.getElapsedMs(), result.getRowsPerSecond());
+        return result;
+    }
+
+    private void readJson(InputStream in, ImportRun run) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) token = parser.nextToken();
+            while (token != null && token != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new BadRequestException("A stock must be a JSON object! line: " + parser.getCurrentLocation().getLineNr());
+                }
+                readJsonStock(parser, run);
+                token = parser.nextToken();
+            }
+        } catch (JsonParseException ex) {
+            throw new BadRequestException("JSON is malformed! " + ex.getOriginalMessage() + " line: " + ex.getLocation().getLineNr());
+        }
+    }
+
+    private void readJsonStock(JsonParser parser, ImportRun run) throws IOException {
+        StockDto.StockDtoBuilder stock = StockDto.builder();
+        String invalid = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("name".equals(field) && value.isStructStart()) {
+                invalid = "#name is not a string: " + parser.getText();
+                parser.skipChildren();
+            } else if ("name".equals(field)) {
+                stock.name(value == JsonToken.VALUE_NULL ? null : parser.getValueAsString());
+            } else if ("current_price".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                stock.currentPrice(parser.getLongValue());
+            } else if ("current_price".equals(field) && value != JsonToken.VALUE_NULL) {
+                invalid = "#current_price is not a number: " + parser.getText();
+                parser.skipChildren();
+            } else {
+                parser.skipChildren(); // id and last_update are set by the database
+            }
+        }
+        if (invalid == null) run.add(stock.build());
+        else run.reject(stock.build(), invalid);
+    }
+
+    private void readCsv(InputStream in, ImportRun run) throws IOException {
+        CsvReader reader = new CsvReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        List<String> header = reader.readRecord();
+        int nameColumn = header == null ? -1 : header.indexOf("name");
+        int priceColumn = header == null ? -1 : header.indexOf("current_price");
+        if (nameColumn < 0) {
+            throw new BadRequestException("CSV must have a header with a name column! header: " + header);
+        }
+        List<String> record;
+        while ((record = reader.readRecord()) != null) {
+            if (record.size() == 1 && record.get(0).isEmpty()) continue; // an empty line
+            String name = nameColumn < record.size() ? record.get(nameColumn) : null;
+            String price = priceColumn >= 0 && priceColumn < record.size() ? record.get(priceColumn) : "";
+            try {
+                run.add(StockDto.builder().name(name).currentPrice(price.isEmpty() ? null : Long.valueOf(price.trim())).build());
+            } catch (NumberFormatException ex) {
+                run.reject(StockDto.builder().name(name).build(), "#current_price is not a number: " + price);
+            }
+        }
+    }
+
+    /**
+     * State of one import: the chunk being filled and the counters.
+     */
+    private class ImportRun {
+        private final long startNanos = System.nanoTime();
+        private final List<StockDto> chunk = new ArrayList<>(chunkSize);
+        private final List<BatchResultDto> errors = new ArrayList<>();
+        private long rows;
+        private long created;
+        private long rejected;
+        private long firstRowOfChunk = 1;
+
+        void add(StockDto stockDto) {
+            chunk.add(stockDto);
+            rows++;
+            if (chunk.size() == chunkSize) flush();
+            if (rows % progressIntervalRows == 0) {
+                log.info("#Import progress. rows: {}, created: {}, rejected: {}, rows/sec: {}", rows, created, rejected, rowsPerSecond());
+            }
+        }
+
+        void reject(StockDto stockDto, String message) {
+            flush(); // keeps the rows in order
+            rows++;
+            error(BatchResultDto.builder().index((int) firstRowOfChunk).errorCode(4009).message(message).stock(stockDto).build());
+            firstRowOfChunk++;
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) return;
+            for (BatchResultDto result : stockBatchService.saveAll(chunk, chunkSize)) {
+                if (result.getErrorCode() == 0) {
+                    created++;
+                } else {
+                    result.setIndex((int) (firstRowOfChunk + result.getIndex()));
+                    error(result);
+                }
+            }
+            firstRowOfChunk += chunk.size();
+            chunk.clear();
+        }
+
+        private void error(BatchResultDto result) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS) errors.add(result);
+        }
+
+        private long elapsedMillis() {
+            return Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        }
+
+        private long rowsPerSecond() {
+            return rows * 1000 / elapsedMillis();
+        }
+
+        ImportResultDto toResult() {
+            return ImportResultDto.builder().rows(rows).created(created).rejected(rejected)
+                    .elapsedMs(elapsedMillis()).rowsPerSecond(rowsPerSecond()).errors(errors).build();
+        }
+    }
+
+    /**
+     * Reads RFC 4180 records: fields are separated by comma, a quoted field may have commas, new lines and doubled quotes.
+     */
+    private static class CsvReader {
+        private final Reader reader;
+
+        CsvReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * @return the fields of the next record, null at the end of the stream
+         */
+        List<String> readRecord() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int c = reader.read();
+            if (c == -1) return null;
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
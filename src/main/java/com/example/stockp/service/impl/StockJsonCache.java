@@ -0,0 +1,161 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.entity.Stock;
+import com.example.stockp.service.dto.StockDto;
+import com.fasterxml.jackson.core.SerializableString;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serialized JSON of stocks, so a stock that is read more often than it is written is serialized once per version.
+ * A fragment is found by the id of the stock and used only for a StockDto equal to the one it was made of, so a dto of another version
+ * or a dto changed in memory (by a client, before a flush) is serialized again, even if the invalidation of the fragment is not seen yet.
+ * Hibernate calls it after the commit of every update and delete of a stock, the fragment of the stock is dropped.
+ * The generation counts committed changes of stocks, a snapshot made from the fragments is stale when the generation moves.
+ * At most json-cache.max-entries fragments are kept, a stock is not cached above it.
+ */
+@Component
+public class StockJsonCache implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener, MeterBinder {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final int maxEntries;
+
+    private final Map<Long, Fragment> fragments = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public StockJsonCache(EntityManagerFactory entityManagerFactory, @Value("${json-cache.max-entries}") int maxEntries) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.maxEntries = maxEntries;
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    /**
+     * @return the JSON of the stock, null if it is not cached
+     */
+    public SerializableString get(StockDto stockDto) {
+        Fragment fragment = fragments.get(stockDto.getId());
+        if (fragment == null || !fragment.stock.equals(stockDto)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return fragment.json;
+    }
+
+    public void put(StockDto stockDto, SerializableString json) {
+        if (fragments.size() >= maxEntries && !fragments.containsKey(stockDto.getId())) return;
+        fragments.put(stockDto.getId(), new Fragment(copyOf(stockDto), json));
+    }
+
+    /**
+     * Count of committed inserts, updates and deletes of stocks seen by this instance.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public int size() {
+        return fragments.size();
+    }
+
+    /**
+     * Drop the JSON of the stock and move the generation.
+     */
+    public void invalidate(Long id) {
+        fragments.remove(id);
+        generation.incrementAndGet();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("json.cache.size", fragments, Map::size).description("Stocks with a serialized JSON").register(registry);
+        FunctionCounter.builder("json.cache.gets", hits, AtomicLong::get).tag("result", "hit").register(registry);
+        FunctionCounter.builder("json.cache.gets", misses, AtomicLong::get).tag("result", "miss").register(registry);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Stock) generation.incrementAndGet();
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Stock) invalidate(((Stock) event.getEntity()).getId());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Stock) invalidate(((Stock) event.getEntity()).getId());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // nothing is cached before the commit
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // nothing is cached before the commit
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // nothing is cached before the commit
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return Stock.class.getName().equals(persister.getEntityName());
+    }
+
+    private static StockDto copyOf(StockDto stockDto) { // the cached dto must not change with the one of the caller
+        return StockDto.builder().id(stockDto.getId()).name(stockDto.getName()).currentPrice(stockDto.getCurrentPrice())
+                .lastUpdate(stockDto.getLastUpdate() == null ? null : new Date(stockDto.getLastUpdate().getTime()))
+                .version(stockDto.getVersion()).build();
+    }
+
+    private static class Fragment {
+        private final StockDto stock;
+        private final SerializableString json;
+
+        Fragment(StockDto stock, SerializableString json) {
+            this.stock = stock;
+            this.json = json;
+        }
+    }
+}
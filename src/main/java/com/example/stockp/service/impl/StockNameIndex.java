@@ -0,0 +1,122 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.entity.Stock;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In memory index of the names of stocks to their ids, so a lookup by name is one hash probe then a read by id from the second level cache.
+ * Hibernate calls it after the commit of every insert, update and delete, a rolled back name is never indexed.
+ * It is a hint, not the truth: bulk statements and other instances are not seen, so the stock read by the id must still have the name.
+ * A name that is not in the index is resolved by the natural id (the UNQ_STO_NAME index) and put in it.
+ */
+@Component
+public class StockNameIndex implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private static final String NAME = "name";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final Map<String, Long> idByName = new ConcurrentHashMap<>();
+
+    public StockNameIndex(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    /**
+     * @return the id of the stock with the name, null if the name is not indexed
+     */
+    public Long get(String name) {
+        return idByName.get(name);
+    }
+
+    public void put(String name, Long id) {
+        idByName.put(name, id);
+    }
+
+    /**
+     * Remove the name only if it still points to the id, a newer stock with the name is kept.
+     */
+    public void remove(String name, Long id) {
+        idByName.remove(name, id);
+    }
+
+    public int size() {
+        return idByName.size();
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Stock) {
+            Stock stock = (Stock) event.getEntity();
+            put(stock.getName(), stock.getId());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Stock)) return;
+        Stock stock = (Stock) event.getEntity();
+        Object[] oldState = event.getOldState();
+        if (oldState != null) { // the name of the snapshot, it is null for an update without a snapshot
+            Object oldName = oldState[nameIndex(event.getPersister())];
+            if (oldName != null && !oldName.equals(stock.getName())) remove((String) oldName, stock.getId());
+        }
+        put(stock.getName(), stock.getId());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Stock) {
+            Stock stock = (Stock) event.getEntity();
+            remove(stock.getName(), stock.getId());
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // nothing is indexed before the commit
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // nothing is indexed before the commit
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // nothing is indexed before the commit
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return Stock.class.getName().equals(persister.getEntityName());
+    }
+
+    private static int nameIndex(EntityPersister persister) {
+        return persister.getEntityMetamodel().getPropertyIndex(NAME);
+    }
+}
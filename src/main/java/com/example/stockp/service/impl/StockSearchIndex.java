@@ -0,0 +1,130 @@
+package com.example.stockp.service.impl;
+
+import lombok.Value;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In memory index of the names of stocks for search. Names are compared in lower case.
+ * Prefixes are a range of a sorted map of the names, it seeks the first name of the prefix like a trie and reads the next ones in order.
+ * Typos are found by the trigrams the query has in common with a name, the similarity is 2 * common / (grams of query + grams of name).
+ * Readers do not lock, writers of the index are serialized.
+ */
+class StockSearchIndex {
+
+    static final String PREFIX = "prefix";
+    static final String FUZZY = "fuzzy";
+
+    private static final int GRAM = 3;
+
+    private final Map<Long, String> nameById = new ConcurrentHashMap<>();
+
+    private final ConcurrentSkipListMap<String, Set<Long>> idsByName = new ConcurrentSkipListMap<>();
+
+    private final Map<String, Set<Long>> idsByGram = new ConcurrentHashMap<>();
+
+    void put(long id, String name) {
+        if (name.equals(nameById.get(id))) return; // most updates are prices, they do not touch the index
+        synchronized (this) {
+            String old = nameById.put(id, name);
+            if (old != null) unindex(id, old);
+            index(id, name);
+        }
+    }
+
+    synchronized void remove(long id) {
+        String old = nameById.remove(id);
+        if (old != null) unindex(id, old);
+    }
+
+    int size() {
+        return nameById.size();
+    }
+
+    /**
+     * At most limit matches: names that start with the query in order of name, then names similar to it (at least minSimilarity) by similarity.
+     * The posting lists of the rarest trigrams are read first, at most maxCandidates names are scored.
+     */
+    List<Match> search(String query, int limit, double minSimilarity, int maxCandidates) {
+        String normalized = normalize(query);
+        List<Match> matches = new ArrayList<>(limit);
+        Set<Long> found = new HashSet<>();
+        for (Map.Entry<String, Set<Long>> entry : idsByName.subMap(normalized, true, normalized + Character.MAX_VALUE, false).entrySet()) {
+            for (Long id : entry.getValue()) {
+                String name = nameById.get(id);
+                if (name == null) continue; // removed meanwhile
+                if (matches.size() == limit) return matches;
+                matches.add(new Match(id, name, PREFIX, (double) normalized.length() / entry.getKey().length()));
+                found.add(id);
+            }
+        }
+        if (matches.size() == limit) return matches;
+
+        Set<String> queryGrams = grams(normalized);
+        List<Set<Long>> postings = new ArrayList<>(queryGrams.size());
+        for (String gram : queryGrams) {
+            Set<Long> ids = idsByGram.get(gram);
+            if (ids != null) postings.add(ids);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        Map<Long, Integer> commonGrams = new HashMap<>();
+        for (Set<Long> ids : postings) {
+            for (Long id : ids) {
+                if (commonGrams.size() < maxCandidates) commonGrams.merge(id, 1, Integer::sum);
+                else commonGrams.computeIfPresent(id, (key, count) -> count + 1);
+            }
+        }
+        List<Match> similar = new ArrayList<>();
+        commonGrams.forEach((id, common) -> {
+            String name = nameById.get(id);
+            if (name == null || found.contains(id)) return;
+            double similarity = 2.0 * common / (queryGrams.size() + grams(normalize(name)).size());
+            if (similarity >= minSimilarity) similar.add(new Match(id, name, FUZZY, similarity));
+        });
+        similar.sort(Comparator.comparingDouble(Match::getScore).reversed().thenComparing(Match::getName));
+        matches.addAll(similar.subList(0, Math.min(similar.size(), limit - matches.size())));
+        return matches;
+    }
+
+    private void index(long id, String name) {
+        String normalized = normalize(name);
+        idsByName.computeIfAbsent(normalized, key -> ConcurrentHashMap.newKeySet()).add(id);
+        for (String gram : grams(normalized)) {
+            idsByGram.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    private void unindex(long id, String name) {
+        String normalized = normalize(name);
+        idsByName.computeIfPresent(normalized, (key, ids) -> ids.remove(id) && ids.isEmpty() ? null : ids);
+        for (String gram : grams(normalized)) {
+            idsByGram.computeIfPresent(gram, (key, ids) -> ids.remove(id) && ids.isEmpty() ? null : ids);
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Trigrams of the name padded by two spaces at start and one at end, so the start of a name weighs more.
+     */
+    private static Set<String> grams(String normalized) {
+        String padded = "  " + normalized + " ";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    @Value
+    static class Match {
+        long id;
+        String name;
+        String type;
+        double score;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.entity.Stock;
+import com.example.stockp.exception.BadRequestException;
+import com.example.stockp.repository.StockRepository;
+import com.example.stockp.service.StockSearchService;
+import com.example.stockp.service.dto.StockMatchDto;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Service Implementation for searching Stocks by name, from an in memory {@link StockSearchIndex}.
+ * The index is built on start-up by a streaming scan of the stocks, then hibernate calls this service after the commit of every insert, update and delete,
+ * so every path of writing (single, batch, import) updates the index and a rolled back name is never found.
+ * A stock changed while the scan runs is taken from its event, not from the scan.
+ */
+@Service
+public class StockSearchServiceImpl implements StockSearchService, PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final Logger log = LoggerFactory.getLogger(StockSearchServiceImpl.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final StockRepository stockRepository;
+
+    private final StockSearchIndex index = new StockSearchIndex();
+
+    private final Set<Long> changedWhileBuilding = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean building = true; // until the scan of start-up is done
+
+    private final int fetchSize;
+
+    private final int maxResults;
+
+    private final int maxQueryLength;
+
+    private final double minSimilarity;
+
+    private final int maxCandidates;
+
+    public StockSearchServiceImpl(EntityManagerFactory entityManagerFactory, StockRepository stockRepository,
+                                  @Value("${search.fetch-size}") int fetchSize, @Value("${search.max-results}") int maxResults,
+                                  @Value("${search.max-query-length}") int maxQueryLength, @Value("${search.min-similarity}") double minSimilarity,
+                                  @Value("${search.max-candidates}") int maxCandidates) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.stockRepository = stockRepository;
+        this.fetchSize = fetchSize;
+        this.maxResults = maxResults;
+        this.maxQueryLength = maxQueryLength;
+        this.minSimilarity = minSimilarity;
+        this.maxCandidates = maxCandidates;
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long startNanos = System.nanoTime();
+        Long minId = stockRepository.findMinId();
+        Long maxId = stockRepository.findMaxId();
+        if (minId != null) {
+            stockRepository.scrollByIdBetween(minId, maxId, fetchSize, stock -> {
+                if (!changedWhileBuilding.contains(stock.getId())) index.put(stock.getId(), stock.getName());
+            });
+        }
+        building = false;
+        changedWhileBuilding.clear();
+        log.info("#Search index of stock names is built. names: {}, elapsed ms: {}", index.size(), (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    @Override
+    public List<StockMatchDto> search(String query, int limit) {
+        log.debug("#Request to search Stocks. query: {}, limit: {}", query, limit);
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("q must not be blank!");
+        }
+        if (query.length() > maxQueryLength) {
+            throw new BadRequestException("q is too long! max length is: " + maxQueryLength + " actual length is: " + query.length());
+        }
+        if (limit < 1 || limit > maxResults) {
+            throw new BadRequestException("limit must be between 1 and " + maxResults + "! limit is: " + limit);
+        }
+        return index.search(query.trim(), limit, minSimilarity, maxCandidates).stream()
+                .map(match -> StockMatchDto.builder().id(match.getId()).name(match.getName()).match(match.getType()).score(match.getScore()).build())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Stock) put((Stock) event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Stock) put((Stock) event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Stock) {
+            Long id = ((Stock) event.getEntity()).getId();
+            if (building) changedWhileBuilding.add(id);
+            index.remove(id);
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // nothing is indexed before the commit
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // nothing is indexed before the commit
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // nothing is indexed before the commit
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return Stock.class.getName().equals(persister.getEntityName());
+    }
+
+    private void put(Stock stock) {
+        if (building) changedWhileBuilding.add(stock.getId());
+        index.put(stock.getId(), stock.getName());
+    }
+}
@@ -3,20 +3,34 @@ package com.example.stockp.service.impl;
 
 import com.example.stockp.entity.Stock;
 import com.example.stockp.exception.BadRequestException;
+import com.example.stockp.exception.PreconditionFailedException;
 import com.example.stockp.exception.StockNotFoundException;
+import com.example.stockp.repository.StockKeyset;
 import com.example.stockp.repository.StockRepository;
+import com.example.stockp.repository.StockVersion;
 import com.example.stockp.service.StockService;
+import com.example.stockp.service.dto.KeysetSliceDto;
 import com.example.stockp.service.dto.StockDto;
 import com.example.stockp.service.mapper.StockMapper;
+import com.example.stockp.util.ETagUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Service Implementation for managing Stock
@@ -27,30 +41,150 @@ public class StockServiceImpl implements StockService {
 
     private final Logger log = LoggerFactory.getLogger(StockServiceImpl.class);
 
+    private static final int MAX_KEYSET_SIZE = 2000; // the same as the max page size of Pageable
+
     private final StockRepository stockRepository;
 
     private final StockMapper stockMapper;
 
-    public StockServiceImpl(StockRepository stockRepository, StockMapper stockMapper) {
+    private final StockCounter stockCounter;
+
+    private final StockNameIndex stockNameIndex;
+
+    private final StockIdFilter stockIdFilter;
+
+    private final int maxIds;
+
+    private final int batchSize;
+
+    public StockServiceImpl(StockRepository stockRepository, StockMapper stockMapper, StockCounter stockCounter,
+                            StockNameIndex stockNameIndex, StockIdFilter stockIdFilter, @Value("${multi-get.max-ids}") int maxIds,
+                            @Value("${multi-get.batch-size}") int batchSize) {
         this.stockRepository = stockRepository;
         this.stockMapper = stockMapper;
+        this.stockCounter = stockCounter;
+        this.stockNameIndex = stockNameIndex;
+        this.stockIdFilter = stockIdFilter;
+        this.maxIds = maxIds;
+        this.batchSize = batchSize;
     }
 
     @Override
     @Transactional(readOnly = true)
     public Page<StockDto> findAll(Pageable pageable) {
         log.debug("#Request to get all Stocks");
-        return stockRepository.findAll(pageable).map(stockMapper::toDto);
+        Slice<StockDto> slice = findSlice(pageable);
+        return new PageImpl<>(slice.getContent(), pageable, stockCounter.total());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<StockDto> findSlice(Pageable pageable) {
+        log.debug("#Request to get a slice of Stocks");
+        return stockRepository.findSliceBy(pageable).map(stockMapper::toDto);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetSliceDto<StockDto> findAllAfter(String after, String order, String direction, int size) {
+        log.debug("#Request to get Stocks after cursor: {}", after);
+        if (size < 1) {
+            throw new BadRequestException("size must be greater than 0! size is: " + size);
+        }
+        size = Math.min(size, MAX_KEYSET_SIZE);
+        StockKeyset keyset = toKeyset(after, order, direction);
+        List<Stock> stocks = stockRepository.findAfter(keyset, size + 1); // the extra stock tells there is a next page, no COUNT is needed
+        boolean hasNext = stocks.size() > size;
+        if (hasNext) {
+            stocks = stocks.subList(0, size);
+        }
+        String nextCursor = hasNext ? keyset.next(stocks.get(size - 1)).toCursor() : null;
+        return new KeysetSliceDto<>(stocks.stream().map(stockMapper::toDto).collect(Collectors.toList()), nextCursor);
+    }
+
+    private StockKeyset toKeyset(String after, String order, String direction) {
+        if (!"asc".equalsIgnoreCase(direction) && !"desc".equalsIgnoreCase(direction)) {
+            throw new BadRequestException("direction must be asc or desc! direction is: " + direction);
+        }
+        try {
+            if (after == null || after.isEmpty()) {
+                return StockKeyset.first(StockKeyset.Order.of(order), "desc".equalsIgnoreCase(direction));
+            }
+            return StockKeyset.fromCursor(after);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("Invalid cursor or order! " + ex.getMessage());
+        }
     }
 
     @Override
     @Transactional(readOnly = true)
     public StockDto findOne(Long id) throws StockNotFoundException {
         log.debug("#Request to get Stock : {}", id);
+        if (!stockIdFilter.mightExist(id)) {
+            throw new StockNotFoundException(id + "");
+        }
         Optional<Stock> stockOptional= stockRepository.findById(id);
         return  stockOptional.map(stockMapper::toDto).orElseThrow(()->new StockNotFoundException(id+ ""));
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<StockDto> findAllById(List<Long> ids) {
+        log.debug("#Request to get Stocks : {}", ids);
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinctIds.isEmpty() || distinctIds.size() > maxIds) {
+            throw new BadRequestException("ids must have 1 to " + maxIds + " stocks. actual: " + distinctIds.size());
+        }
+        if (distinctIds.contains(null)) {
+            throw new BadRequestException("ids must not have null! ids: " + ids);
+        }
+        stockIdFilter.removeAbsent(distinctIds);
+        if (distinctIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return stockRepository.findAllByIdInOrder(distinctIds, batchSize).stream()
+                .filter(Objects::nonNull).map(stockMapper::toDto).collect(Collectors.toList());
+    }
+
+    /**
+     * The name index is a hint, the stock read by its id must still have the name. Otherwise the entry is dropped
+     * and the name is resolved by the natural id.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public StockDto findByName(String name) throws StockNotFoundException {
+        log.debug("#Request to get Stock by name : {}", name);
+        Long id = stockNameIndex.get(name);
+        Optional<Stock> stockOptional = id == null ? Optional.empty() : stockRepository.findById(id).filter(stock -> name.equals(stock.getName()));
+        if (stockOptional.isEmpty()) {
+            if (id != null) stockNameIndex.remove(name, id);
+            stockOptional = stockRepository.findByNaturalName(name);
+            stockOptional.ifPresent(stock -> stockNameIndex.put(stock.getName(), stock.getId()));
+        }
+        return stockOptional.map(stockMapper::toDto).orElseThrow(() -> new StockNotFoundException(name));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<String> findETag(Long id) {
+        log.debug("#Request to get ETag of Stock : {}", id);
+        if (!stockIdFilter.mightExist(id)) {
+            return Optional.empty();
+        }
+        return stockRepository.findVersionById(id).map(version -> ETagUtil.ofStock(version.getId(), version.getVersion()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public String findPageETag(Pageable pageable, boolean total) {
+        log.debug("#Request to get ETag of a page of Stocks");
+        Slice<StockVersion> versions = stockRepository.findVersionsBy(pageable);
+        if (total) { // the same page as findAll, the total comes from the counter
+            versions = new PageImpl<>(versions.getContent(), pageable, stockCounter.total());
+        }
+        return ETagUtil.ofPage(versions, StockVersion::getId, StockVersion::getVersion);
+    }
+
     @Override
     public StockDto save(StockDto stockDto) {
         log.debug("#Request to save Stock : {}", stockDto);
@@ -65,39 +199,64 @@ public class StockServiceImpl implements StockService {
 
     @Override
     public StockDto update(StockDto stockDto) {
+        return update(stockDto, null);
+    }
+
+    /**
+     * The stock is loaded (from the second level cache if it is there) and changed in place, so dirty checking writes it with one UPDATE.
+     * The UPDATE has the loaded version in its WHERE, a concurrent writer that committed first makes it update no row.
+     */
+    @Override
+    public StockDto update(StockDto stockDto, Long expectedVersion) {
         log.debug("#Request to save Stock : {}", stockDto);
         if (stockDto.getId() == null) {
             throw new BadRequestException("#Invalid id! id is null! Dto must have an id.");
         }
-        if (!stockRepository.existsById(stockDto.getId())) {
-            throw new BadRequestException("Entity not found! There no entity with this id for update. actual dto.id is: " + stockDto.getId());
-        }
-        Stock stock = stockMapper.toEntity(stockDto);
-        stock.setLastUpdate(new Date()); // I took for every update it needs to be updated.
-        stock = stockRepository.save(stock);
-        return stockMapper.toDto(stock);
+        Stock stock = stockRepository.findById(stockDto.getId())
+                .orElseThrow(() -> new BadRequestException("Entity not found! There no entity with this id for update. actual dto.id is: " + stockDto.getId()));
+        checkVersion(stock, expectedVersion);
+        stockMapper.update(stock, stockDto);
+        return flushAndMap(stock, expectedVersion);
     }
 
     @Override
     public StockDto partialUpdate(StockDto stockDto) {
+        return partialUpdate(stockDto, null);
+    }
+
+    /**
+     * Like update, just the given fields of dto are written.
+     */
+    @Override
+    public StockDto partialUpdate(StockDto stockDto, Long expectedVersion) {
         log.debug("#Request to partially update Stock : {}", stockDto);
 
         if (stockDto.getId() == null) {
             throw new BadRequestException("id is null! Invalid id! Dto must have an id.");
         }
-        if (!stockRepository.existsById(stockDto.getId())) {
-            throw new BadRequestException("Entity not found! There no entity with this id for partial update. actual dto.id is: " + stockDto.getId());
-        }
-        Optional<Stock> stock = stockRepository.findById(stockDto.getId());
-        Optional<Stock> stockAfterMergingWithInputDtoOptional = stock.map(existingStock -> {
-            stockMapper.partialUpdate(existingStock, stockDto);
-            return existingStock;
-        });
-        Optional<Stock> stockOptional= stockAfterMergingWithInputDtoOptional.map(stockRepository::save);
-        return stockOptional.map(stockMapper::toDto).orElseThrow(()->new RuntimeException("Something unhandled occurred in partial update! id is: "+stockDto.getId()));
+        Stock stock = stockRepository.findById(stockDto.getId())
+                .orElseThrow(() -> new BadRequestException("Entity not found! There no entity with this id for partial update. actual dto.id is: " + stockDto.getId()));
+        checkVersion(stock, expectedVersion);
+        stockMapper.partialUpdate(stock, stockDto);
+        return flushAndMap(stock, expectedVersion);
     }
 
+    private void checkVersion(Stock stock, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(stock.getVersion())) {
+            throw new PreconditionFailedException("If-Match has the version " + expectedVersion + " the current version is " + stock.getVersion());
+        }
+    }
 
+    private StockDto flushAndMap(Stock stock, Long expectedVersion) {
+        stock.setLastUpdate(new Date()); // I took for every update it needs to be updated.
+        try {
+            stockRepository.flush(); // the UPDATE is issued here so the returned dto has the lastUpdate written by @PreUpdate and the new version
+        } catch (OptimisticLockingFailureException ex) {
+            if (expectedVersion == null) throw ex;
+            throw new PreconditionFailedException("The version " + expectedVersion + " is updated by another request");
+        }
+        return stockMapper.toDto(stock);
+    }
 
     @Override
     public void delete(Long id) {
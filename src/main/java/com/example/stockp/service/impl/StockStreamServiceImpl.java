@@ -0,0 +1,336 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.entity.Stock;
+import com.example.stockp.exception.BadRequestException;
+import com.example.stockp.repository.StockRepository;
+import com.example.stockp.service.StockStreamService;
+import com.example.stockp.service.mapper.StockMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service Implementation for streaming changes of Stocks by Server-Sent Events.
+ * Hibernate calls it after the commit of an insert, update or delete of a stock, so every path of writing is streamed and a rolled back change never is.
+ * An event is serialized to JSON once, the same string is sent to every subscriber of the stock.
+ * Every subscriber has a bounded buffer drained by the sender threads, a slow subscriber does not hold the committing thread nor the others.
+ * When the buffer is full, stream.policy decides: conflate keeps the latest event of each stock, drop drops the oldest event.
+ * Only the sender threads write to a subscriber. A write that takes longer than stream.write-timeout-ms drops the subscriber,
+ * its sender thread is freed when the write fails by the socket timeout of tomcat. The emitter can not be closed meanwhile, the write holds its lock.
+ * So the pool has no cap: stream.sender-threads are kept, a subscriber blocked in a write holds its own thread and the others get new ones.
+ * A subscriber is drained by one thread at a time, there are at most as many threads as subscribers.
+ */
+@Service
+public class StockStreamServiceImpl implements StockStreamService, PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    public enum Policy {CONFLATE, DROP}
+
+    private static final String EVENT_STOCK = "stock";
+    private static final String EVENT_DELETE = "delete";
+
+    private final Logger log = LoggerFactory.getLogger(StockStreamServiceImpl.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final StockRepository stockRepository;
+
+    private final StockMapper stockMapper;
+
+    private final ObjectMapper objectMapper;
+
+    private final Policy policy;
+
+    private final int bufferSize;
+
+    private final int maxIds;
+
+    private final long timeoutMs;
+
+    private final long writeTimeoutNanos;
+
+    private final Map<Long, Set<Subscriber>> subscribersByStock = new ConcurrentHashMap<>();
+
+    private final ExecutorService senderExecutor;
+
+    public StockStreamServiceImpl(EntityManagerFactory entityManagerFactory, StockRepository stockRepository, StockMapper stockMapper,
+                                  ObjectMapper objectMapper, @Value("${stream.policy}") Policy policy, @Value("${stream.buffer-size}") int bufferSize,
+                                  @Value("${stream.max-ids}") int maxIds, @Value("${stream.timeout-ms}") long timeoutMs,
+                                  @Value("${stream.sender-threads}") int senderThreads, @Value("${stream.write-timeout-ms}") long writeTimeoutMs) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.stockRepository = stockRepository;
+        this.stockMapper = stockMapper;
+        this.objectMapper = objectMapper;
+        this.policy = policy;
+        this.bufferSize = bufferSize;
+        this.maxIds = maxIds;
+        this.timeoutMs = timeoutMs;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senderExecutor = new ThreadPoolExecutor(senderThreads, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "sse-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public SseEmitter subscribe(Set<Long> ids) {
+        log.debug("#Request to subscribe to Stocks : {}", ids);
+        if (ids.isEmpty() || ids.size() > maxIds) {
+            throw new BadRequestException("ids must have 1 to " + maxIds + " stocks. actual: " + ids.size());
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        register(emitter, ids);
+        return emitter;
+    }
+
+    /**
+     * Package-private for tests, they register an emitter whose write blocks.
+     */
+    void register(SseEmitter emitter, Set<Long> ids) {
+        Subscriber subscriber = new Subscriber(emitter, ids);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(ex -> unsubscribe(subscriber));
+        ids.forEach(id -> subscribersByStock.computeIfAbsent(id, key -> ConcurrentHashMap.newKeySet()).add(subscriber));
+        stockRepository.findAllById(ids).forEach(stock -> subscriber.offerSnapshot(stock.getId(), toJson(stock)));
+    }
+
+    /**
+     * A comment line keeps proxies from closing an idle stream, and it finds the subscribers that are gone.
+     * It is put into the buffer of an idle subscriber and sent by a sender thread, a subscriber stuck in a write is dropped.
+     */
+    @Scheduled(fixedDelayString = "${stream.heartbeat-interval-ms}")
+    public void heartbeat() {
+        long nowNanos = System.nanoTime();
+        subscribersByStock.values().stream().flatMap(Set::stream).distinct().forEach(subscriber -> {
+            if (subscriber.isWritingSince(nowNanos - writeTimeoutNanos)) {
+                log.debug("#Subscriber is dropped, a write takes longer than the timeout. ids: {}", subscriber.ids);
+                subscriber.drop();
+            } else {
+                subscriber.offerHeartbeat();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribersByStock.values().stream().flatMap(Set::stream).distinct().forEach(subscriber -> subscriber.emitter.complete());
+        senderExecutor.shutdownNow();
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Stock) publish((Stock) event.getEntity(), EVENT_STOCK);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Stock) publish((Stock) event.getEntity(), EVENT_STOCK);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Stock) publish((Stock) event.getEntity(), EVENT_DELETE);
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // nothing is published before the commit
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // nothing is published before the commit
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // nothing is published before the commit
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return Stock.class.getName().equals(persister.getEntityName());
+    }
+
+    private void publish(Stock stock, String eventName) {
+        Set<Subscriber> subscribers = subscribersByStock.get(stock.getId());
+        if (subscribers == null || subscribers.isEmpty()) return;
+        String data = EVENT_DELETE.equals(eventName) ? "{\"id\":" + stock.getId() + "}" : toJson(stock);
+        subscribers.forEach(subscriber -> subscriber.offer(stock.getId(), eventName, data));
+    }
+
+    private String toJson(Stock stock) {
+        try {
+            return objectMapper.writeValueAsString(stockMapper.toDto(stock));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Stock could not be serialized. id: " + stock.getId(), ex);
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscriber.ids.forEach(id -> subscribersByStock.computeIfPresent(id, (key, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        }));
+    }
+
+    /**
+     * A subscriber and its buffer. One sender thread at a time drains it, so its events keep their order.
+     */
+    private class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<Long> ids;
+        private final LinkedHashMap<Long, Event> conflated = new LinkedHashMap<>();
+        private final ArrayDeque<Event> queued = new ArrayDeque<>();
+        private final Set<Long> changed = new HashSet<>(); // stocks with a change, their snapshot would be older than it
+        private boolean heartbeat; // a heartbeat is waiting, sent only when no event is
+        private boolean draining;
+        private boolean gone;
+        private long dropped;
+        private volatile boolean writing;
+        private volatile long writeStartedNanos;
+
+        Subscriber(SseEmitter emitter, Set<Long> ids) {
+            this.emitter = emitter;
+            this.ids = Set.copyOf(ids);
+        }
+
+        synchronized void offerSnapshot(Long id, String data) {
+            if (!changed.contains(id)) offer(id, EVENT_STOCK, data);
+        }
+
+        void offer(Long id, String name, String data) {
+            Event event = new Event(name, data);
+            synchronized (this) {
+                if (gone) return;
+                changed.add(id);
+                if (policy == Policy.CONFLATE) {
+                    conflated.remove(id); // the latest event of the stock goes to the end
+                    conflated.put(id, event);
+                } else {
+                    if (queued.size() == bufferSize) {
+                        queued.poll();
+                        dropped++;
+                    }
+                    queued.add(event);
+                }
+                if (draining) return;
+                draining = true;
+            }
+            senderExecutor.execute(this::drain);
+        }
+
+        void offerHeartbeat() {
+            synchronized (this) {
+                if (gone) return;
+                heartbeat = true;
+                if (draining) return;
+                draining = true;
+            }
+            senderExecutor.execute(this::drain);
+        }
+
+        boolean isWritingSince(long nanos) {
+            return writing && writeStartedNanos - nanos < 0;
+        }
+
+        /**
+         * It does not touch the emitter, a write of a sender may hold it. The sender completes it when its write ends.
+         */
+        void drop() {
+            unsubscribe(this);
+            synchronized (this) {
+                gone = true;
+                conflated.clear();
+                queued.clear();
+                heartbeat = false;
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Event event;
+                synchronized (this) {
+                    event = next();
+                    if (event == null) {
+                        draining = false;
+                        if (gone) emitter.complete();
+                        return;
+                    }
+                }
+                writeStartedNanos = System.nanoTime();
+                writing = true;
+                try {
+                    emitter.send(event == Event.HEARTBEAT ? SseEmitter.event().comment("heartbeat") : SseEmitter.event().name(event.name).data(event.data));
+                } catch (IOException | IllegalStateException ex) {
+                    log.debug("#Subscriber is gone. ids: {}, dropped events: {}", ids, dropped);
+                    drop();
+                    synchronized (this) {
+                        draining = false;
+                    }
+                    return;
+                } finally {
+                    writing = false;
+                }
+            }
+        }
+
+        private Event next() {
+            Event event;
+            if (policy == Policy.DROP) {
+                event = queued.poll();
+            } else {
+                Iterator<Event> iterator = conflated.values().iterator();
+                event = iterator.hasNext() ? iterator.next() : null;
+                if (event != null) iterator.remove();
+            }
+            if (event == null && heartbeat) event = Event.HEARTBEAT;
+            heartbeat = false; // an event keeps the stream alive as well
+            return event;
+        }
+    }
+
+    private static class Event {
+        private static final Event HEARTBEAT = new Event(null, null);
+
+        private final String name;
+        private final String data;
+
+        Event(String name, String data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.entity.Stock;
+import com.example.stockp.exception.BadRequestException;
+import com.example.stockp.exception.TooManyRequestsException;
+import com.example.stockp.repository.StockRepository;
+import com.example.stockp.service.StockTickService;
+import com.example.stockp.service.dto.TickDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service Implementation for ingesting price ticks of Stocks.
+ * Ticks are coalesced in memory by stock, the latest timestamp wins, so a flush writes one UPDATE per stock whatever the rate of the feed.
+ * The buffer is flushed every tick.flush-interval-ms, or earlier when it holds tick.flush-size stocks.
+ * Stocks are loaded by id (second level cache) and updated by dirty checking, hibernate sends the UPDATEs in jdbc batches.
+ * The buffer is bounded by tick.max-pending stocks: a request reserves a place for each of its stocks before it merges,
+ * a request that does not fit is rejected with 429 and merges nothing. The places of stocks that were already waiting are given back.
+ * A tick older than the last update of its stock (a later commit, or a tick of an earlier flush) is dropped, last update is the time of the tick.
+ * So a tick later than now plus tick.max-clock-skew-ms is rejected with 400, it would hide the ticks until its time and move the stock in the
+ * order of last update and in the price history.
+ */
+@Service
+public class StockTickServiceImpl implements StockTickService {
+
+    private final Logger log = LoggerFactory.getLogger(StockTickServiceImpl.class);
+
+    private final StockRepository stockRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int flushSize;
+
+    private final int maxPending;
+
+    private final int maxItems;
+
+    private final long maxClockSkewMs;
+
+    private final Map<Object, TickDto> latestTicks = new ConcurrentHashMap<>(); // key is the id of the stock, or its name
+
+    private final AtomicInteger pending = new AtomicInteger(); // keys of latestTicks, and the places reserved by running requests
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tick-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public StockTickServiceImpl(StockRepository stockRepository, TransactionTemplate transactionTemplate,
+                                @Value("${tick.flush-size}") int flushSize, @Value("${tick.max-pending}") int maxPending,
+                                @Value("${tick.max-items}") int maxItems, @Value("${tick.max-clock-skew-ms}") long maxClockSkewMs) {
+        this.stockRepository = stockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.flushSize = flushSize;
+        this.maxPending = maxPending;
+        this.maxItems = maxItems;
+        this.maxClockSkewMs = maxClockSkewMs;
+    }
+
+    @Override
+    public int accept(List<TickDto> ticks) {
+        log.debug("#Request to accept price ticks. size: {}", ticks.size());
+        Date now = new Date();
+        validate(ticks, now);
+        int reserved = (int) ticks.stream().map(StockTickServiceImpl::keyOf).distinct().count();
+        if (pending.addAndGet(reserved) > maxPending) {
+            int waiting = pending.addAndGet(-reserved);
+            requestFlush();
+            throw new TooManyRequestsException("Tick buffer is full! pending stocks: " + waiting + " stocks of the request: " + reserved);
+        }
+        int added = 0;
+        for (TickDto tick : ticks) {
+            added += merge(new TickDto(tick.getId(), tick.getName(), tick.getPrice(), tick.getTimestamp() == null ? now : tick.getTimestamp()));
+        }
+        if (pending.addAndGet(added - reserved) >= flushSize) {
+            requestFlush();
+        }
+        return ticks.size();
+    }
+
+    @Override
+    @Scheduled(initialDelayString = "${tick.flush-interval-ms}", fixedDelayString = "${tick.flush-interval-ms}")
+    public int flush() {
+        flushLock.lock();
+        try {
+            List<TickDto> ticks = drain();
+            int updated = 0;
+            for (int from = 0; from < ticks.size(); from += flushSize) {
+                List<TickDto> chunk = ticks.subList(from, Math.min(from + flushSize, ticks.size()));
+                updated += writeChunk(chunk);
+            }
+            if (!ticks.isEmpty()) log.debug("#Ticks are flushed. ticks: {}, updated stocks: {}", ticks.size(), updated);
+            return updated;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdownNow();
+        flush();
+    }
+
+    private int writeChunk(List<TickDto> chunk) {
+        try {
+            Integer updated = transactionTemplate.execute(ts -> write(chunk));
+            return updated == null ? 0 : updated;
+        } catch (RuntimeException ex) {
+            // Put the ticks back, a newer tick that arrived meanwhile still wins.
+            log.error("#Flush of ticks failed, they are kept for the next flush. size: {}, reason: {}", chunk.size(), ex.getMessage());
+            chunk.forEach(tick -> pending.addAndGet(merge(tick))); // above tick.max-pending if requests filled it meanwhile
+            return 0;
+        }
+    }
+
+    private int write(List<TickDto> chunk) {
+        List<Long> ids = chunk.stream().map(TickDto::getId).filter(Objects::nonNull).collect(Collectors.toList());
+        List<String> names = chunk.stream().filter(tick -> tick.getId() == null).map(TickDto::getName).collect(Collectors.toList());
+        Map<Long, Stock> stocksById = new HashMap<>();
+        if (!ids.isEmpty()) stocksById.putAll(toMap(stockRepository.findAllById(ids), Stock::getId));
+        Map<String, Stock> stocksByName = names.isEmpty() ? Collections.emptyMap() : toMap(stockRepository.findByNameIn(names), Stock::getName);
+
+        Map<Stock, TickDto> tickOfStock = new IdentityHashMap<>(); // a stock may be ticked by id and by name in one window
+        for (TickDto tick : chunk) {
+            Stock stock = tick.getId() != null ? stocksById.get(tick.getId()) : stocksByName.get(tick.getName());
+            if (stock == null) {
+                log.debug("#Tick of an unknown stock is dropped. tick: {}", tick);
+                continue;
+            }
+            tickOfStock.merge(stock, tick, StockTickServiceImpl::latest);
+        }
+        int updated = 0;
+        for (Map.Entry<Stock, TickDto> entry : tickOfStock.entrySet()) {
+            Stock stock = entry.getKey();
+            TickDto tick = entry.getValue();
+            if (stock.getLastUpdate() != null && tick.getTimestamp().before(stock.getLastUpdate())) {
+                log.debug("#Tick older than the last update of its stock is dropped. tick: {}, last update: {}", tick, stock.getLastUpdate());
+                continue;
+            }
+            stock.tick(tick.getPrice(), tick.getTimestamp());
+            updated++;
+        }
+        return updated;
+    }
+
+    private List<TickDto> drain() {
+        List<TickDto> ticks = new ArrayList<>(latestTicks.size());
+        for (Object key : latestTicks.keySet()) {
+            TickDto tick = latestTicks.remove(key);
+            if (tick != null) ticks.add(tick);
+        }
+        pending.addAndGet(-ticks.size());
+        return ticks;
+    }
+
+    /**
+     * @return 1 if the stock was not waiting, its key is added
+     */
+    private int merge(TickDto tick) {
+        boolean[] added = new boolean[1];
+        latestTicks.compute(keyOf(tick), (key, current) -> {
+            added[0] = current == null;
+            return current == null ? tick : latest(current, tick);
+        });
+        return added[0] ? 1 : 0;
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                flushRequested.set(false);
+                flush();
+            });
+        }
+    }
+
+    private void validate(List<TickDto> ticks, Date now) {
+        if (ticks.isEmpty()) {
+            throw new BadRequestException("Ticks are empty!");
+        }
+        if (ticks.size() > maxItems) {
+            throw new BadRequestException("Too many ticks! max items is: " + maxItems + " actual size is: " + ticks.size());
+        }
+        for (int index = 0; index < ticks.size(); index++) {
+            TickDto tick = ticks.get(index);
+            if (tick == null || (tick.getId() == null && tick.getName() == null) || tick.getPrice() == null) {
+                throw new BadRequestException("Tick must have an id or a name, and a price! index: " + index + " tick: " + tick);
+            }
+            if (tick.getTimestamp() != null && tick.getTimestamp().getTime() > now.getTime() + maxClockSkewMs) {
+                throw new BadRequestException("Tick is later than now! max clock skew ms: " + maxClockSkewMs + " index: " + index + " tick: " + tick);
+            }
+        }
+    }
+
+    private static Object keyOf(TickDto tick) {
+        return tick.getId() != null ? tick.getId() : tick.getName();
+    }
+
+    private static TickDto latest(TickDto current, TickDto candidate) {
+        return candidate.getTimestamp().before(current.getTimestamp()) ? current : candidate;
+    }
+
+    private static <K> Map<K, Stock> toMap(List<Stock> stocks, Function<Stock, K> key) {
+        return stocks.stream().collect(Collectors.toMap(key, Function.identity()));
+    }
+}
@@ -14,6 +14,9 @@ public interface EntityMapper<D, E> {
 
     D toDto(E entity);
 
+    @Named("update")
+    void update(@MappingTarget E entity, D dto);// Overwrite all fields of exist bean, null fields of dto included
+
     @Named("partialUpdate")
     @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
     void partialUpdate(@MappingTarget E entity, D dto);// Update exist bean without return value
@@ -6,6 +6,23 @@ import org.mapstruct.*;
 
 /**
  * Mapper for the entity  Stock and its Dto StockDto.
+ * version of the entity is written by hibernate only, it is never mapped from a dto.
  */
 @Mapper(componentModel = "spring")
-public interface StockMapper extends EntityMapper<StockDto, Stock> {}
+public interface StockMapper extends EntityMapper<StockDto, Stock> {
+
+    @Override
+    @Mapping(target = "version", ignore = true)
+    Stock toEntity(StockDto dto);
+
+    @Override
+    @Named("update")
+    @Mapping(target = "version", ignore = true)
+    void update(@MappingTarget Stock entity, StockDto dto);
+
+    @Override
+    @Named("partialUpdate")
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "version", ignore = true)
+    void partialUpdate(@MappingTarget Stock entity, StockDto dto);
+}
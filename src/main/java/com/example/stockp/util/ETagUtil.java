@@ -0,0 +1,53 @@
+package com.example.stockp.util;
+
+import com.example.stockp.exception.PreconditionFailedException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * Strong ETags of stocks and pages of stocks. A stock is tagged by its id and version,
+ * a page by the tags of its stocks and by what its links and headers are made of (total, next page).
+ */
+public enum ETagUtil {
+    INSTANCE;
+
+    public static String ofStock(Long id, Long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    public static <T> String ofPage(Slice<T> slice, Function<T, Long> id, Function<T, Long> version) {
+        StringBuilder versions = new StringBuilder();
+        for (T item : slice.getContent()) {
+            versions.append(id.apply(item)).append('-').append(version.apply(item)).append(',');
+        }
+        versions.append(slice.hasNext());
+        if (slice instanceof Page) {
+            versions.append(',').append(((Page<T>) slice).getTotalElements());
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(versions.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * The version of the stock that If-Match expects, null for "*" (any version).
+     * If-Match is compared strongly: a weak tag, a tag of another stock or a list of tags never matches.
+     */
+    public static Long versionOf(String ifMatch, Long id) {
+        String tag = ifMatch.trim();
+        if ("*".equals(tag)) {
+            return null;
+        }
+        String prefix = "\"" + id + "-";
+        if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+            try {
+                return Long.valueOf(tag.substring(prefix.length(), tag.length() - 1));
+            } catch (NumberFormatException ignored) {
+                // falls through, it is not an ETag of this stock
+            }
+        }
+        throw new PreconditionFailedException("If-Match is not an ETag of the stock " + id + "! If-Match: " + ifMatch);
+    }
+}
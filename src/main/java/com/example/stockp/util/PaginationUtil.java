@@ -5,6 +5,7 @@ package com.example.stockp.util;
  */
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.hateoas.Link;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -18,22 +19,46 @@ public  enum PaginationUtil {
     INSTANCE;
     public static <T> List<Link> generatePaginationList(UriComponentsBuilder uriBuilder, Page<T> page) {
 
+        List<Link> linkList = generateSlicePaginationList(uriBuilder, page);
+        if (page.getNumber() < page.getTotalPages() - 1) { // if is not the last page
+            linkList.add(prepareLink(uriBuilder, page.getTotalPages() - 1, page.getSize(), "last"));
+        }
+        return linkList;
+    }
+
+    /**
+     * A slice does not know the total, so there is no last link.
+     */
+    public static <T> List<Link> generateSlicePaginationList(UriComponentsBuilder uriBuilder, Slice<T> slice) {
+
         List<Link> linkList = new ArrayList<>();
-        int pageNumber = page.getNumber();
-        int pageSize = page.getSize();
+        int pageNumber = slice.getNumber();
+        int pageSize = slice.getSize();
 
         if (pageNumber > 0) { // is not the first page
             linkList.add(prepareLink(uriBuilder, 0, pageSize, "first"));
             linkList.add(prepareLink(uriBuilder, pageNumber - 1, pageSize, "prev"));
         }
-        if (pageNumber < page.getTotalPages() - 1) { // if is not the last page
+        if (slice.hasNext()) { // if is not the last page
             linkList.add(prepareLink(uriBuilder, pageNumber + 1, pageSize, "next"));
-            linkList.add(prepareLink(uriBuilder, page.getTotalPages() - 1, pageSize, "last"));
         }
 
         return linkList;
     }
 
+    /**
+     * Keyset pagination has no page number and no total, so there is just a next link that carries the opaque cursor.
+     */
+    public static List<Link> generateCursorPaginationList(UriComponentsBuilder uriBuilder, String nextCursor, int pageSize) {
+        List<Link> linkList = new ArrayList<>();
+        if (nextCursor != null) { // if is not the last page
+            String uri = uriBuilder.replaceQueryParam("after", nextCursor).replaceQueryParam("size", Integer.toString(pageSize))
+                    .replaceQueryParam("order").replaceQueryParam("direction").toUriString(); // the cursor knows the order
+            linkList.add(Link.of(uri).withRel("next"));
+        }
+        return linkList;
+    }
+
     private static org.springframework.hateoas.Link prepareLink(UriComponentsBuilder uriBuilder, int pageNumber, int pageSize, String relType) {
         return Link.of(preparePageUri(uriBuilder, pageNumber, pageSize)).withRel(relType);
     }
@@ -0,0 +1,66 @@
+package com.example.stockp;
+
+import com.example.stockp.config.SqlStatementCountFilter;
+import com.example.stockp.config.SqlStatementCounter;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Assertions of the number of SQL statements a request or a call may issue, so an extra query fails a test.
+ * A request is checked by the X-Sql-Statements header, a call by counting the statements of the current thread.
+ * A jdbc batch counts as one statement, so a batched insert of many stocks is one insert.
+ */
+public final class SqlStatementCountUtil {
+
+    /**
+     * At most max statements of the type in the response of MockMvc.
+     */
+    public static ResultMatcher maxStatements(SqlStatementCounter.Type type, long max) {
+        return result -> {
+            String header = result.getResponse().getHeader(SqlStatementCountFilter.HEADER);
+            assertThat(header).as("header " + SqlStatementCountFilter.HEADER).isNotNull();
+            assertThat(countOf(header, type)).as("%s statements of %s %s, all of them: %s", type, result.getRequest().getMethod(),
+                    result.getRequest().getRequestURI(), header).isLessThanOrEqualTo(max);
+        };
+    }
+
+    /**
+     * At most max statements of any type in the response of MockMvc.
+     */
+    public static ResultMatcher maxStatements(long max) {
+        return result -> {
+            String header = result.getResponse().getHeader(SqlStatementCountFilter.HEADER);
+            assertThat(header).as("header " + SqlStatementCountFilter.HEADER).isNotNull();
+            long total = 0;
+            for (SqlStatementCounter.Type type : SqlStatementCounter.Type.values()) total += countOf(header, type);
+            assertThat(total).as("statements of %s %s: %s", result.getRequest().getMethod(), result.getRequest().getRequestURI(), header)
+                    .isLessThanOrEqualTo(max);
+        };
+    }
+
+    /**
+     * Statements issued by the call on the current thread. The call must flush, statements of a flush at the end of a test transaction are not seen.
+     */
+    public static SqlStatementCounter.Counts countStatements(Executable call) throws Throwable {
+        SqlStatementCounter.Counts counts = SqlStatementCounter.start();
+        try {
+            call.execute();
+        } finally {
+            SqlStatementCounter.stop();
+        }
+        return counts;
+    }
+
+    private static long countOf(String header, SqlStatementCounter.Type type) {
+        for (String count : header.split(",")) {
+            String[] pair = count.split("=");
+            if (pair[0].equals(type.tagValue())) return Long.parseLong(pair[1]);
+        }
+        return 0;
+    }
+
+    private SqlStatementCountUtil() {}
+}
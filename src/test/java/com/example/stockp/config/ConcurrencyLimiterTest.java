@@ -0,0 +1,99 @@
+package com.example.stockp.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimiterTest {
+
+    private static final long THRESHOLD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void shouldRejectAndCount_whenLimitIsReached() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10, 0.5, THRESHOLD_NANOS);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejections());
+
+        limiter.release(System.nanoTime(), false, true);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void shouldDecreaseOncePerWindowAndIncreaseAdditively_whenRequestsAreSlowThenFast() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 2, 9, 0.5, THRESHOLD_NANOS);
+        long slowStart = System.nanoTime() - 2 * THRESHOLD_NANOS;
+        for (int i = 0; i < 4; i++) assertTrue(limiter.tryAcquire());
+
+        limiter.release(slowStart, false, true);
+        limiter.release(slowStart, false, true); // it started before the decrease, the same window
+        assertEquals(4, limiter.getLimit());
+        limiter.release(System.nanoTime(), true, true); // overloaded, a new window
+        assertEquals(2, limiter.getLimit());
+        limiter.release(System.nanoTime(), true, true);
+        assertEquals(2, limiter.getLimit()); // the min limit
+
+        assertTrue(limiter.tryAcquire()); // a long request, so the limit is in use
+        for (int i = 0; i < 100; i++) { // it grows about one per limit requests
+            assertTrue(limiter.tryAcquire());
+            limiter.release(System.nanoTime(), false, true);
+        }
+        assertThat(limiter.getLimit()).isGreaterThan(2).isLessThanOrEqualTo(9);
+    }
+
+    @Test
+    void shouldRespondServiceUnavailableWithRetryAfter_whenFilterIsOverTheLimit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 0.5, THRESHOLD_NANOS);
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limiter, new ObjectMapper());
+        assertTrue(limiter.tryAcquire()); // a running request
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/stocks/1"), response, chain);
+
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeader(HttpHeaders.RETRY_AFTER));
+        assertThat(response.getContentAsString()).contains("\"error_code\":5031");
+        assertThat(chain.getRequest()).isNull();
+
+        limiter.release(System.nanoTime(), false, true);
+        response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/stocks/1"), response, new MockFilterChain());
+        assertEquals(200, response.getStatus());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void shouldNotAdmitStreamExportAndCatalogNorTimeBulkRequests_whenFilterIsCalled() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 4, 0.5, 0); // every timed request is slow
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limiter, new ObjectMapper());
+        for (int i = 0; i < 4; i++) assertTrue(limiter.tryAcquire()); // the limit is reached
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/stocks/catalog"), response, new MockFilterChain());
+        assertEquals(200, response.getStatus());
+        assertEquals(4, limiter.getInFlight());
+        for (int i = 0; i < 4; i++) limiter.release(System.nanoTime(), false, false);
+
+        MockHttpServletRequest byIds = new MockHttpServletRequest("GET", "/api/stocks");
+        byIds.setParameter("ids", "1,2,3");
+        filter.doFilter(byIds, new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(new MockHttpServletRequest("PATCH", "/api/stocks/batch"), new MockHttpServletResponse(), new MockFilterChain());
+        assertEquals(4, limiter.getLimit()); // slow by their size, not a drop
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/stocks/1"), new MockHttpServletResponse(), new MockFilterChain());
+        assertEquals(2, limiter.getLimit());
+    }
+}
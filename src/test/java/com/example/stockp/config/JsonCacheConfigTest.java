@@ -0,0 +1,53 @@
+package com.example.stockp.config;
+
+import com.example.stockp.service.dto.ResponseDto;
+import com.example.stockp.service.dto.StockDto;
+import com.example.stockp.service.impl.StockJsonCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonCacheConfigTest {
+
+    private final StockJsonCache stockJsonCache = new StockJsonCache(null, 10); // its listeners are not registered, the test invalidates it
+
+    private final ObjectMapper cachedMapper = new ObjectMapper().registerModule(new JsonCacheConfig().stockJsonCacheModule(stockJsonCache));
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void shouldWriteTheSameJsonAsJackson_whenStockIsSerializedFromCache() throws Exception {
+        StockDto stock = StockDto.builder().id(1L).name("Stock \"1\" \u00e9").currentPrice(10L).lastUpdate(new Date(1000)).version(0L).build();
+        ResponseDto<StockDto> responseDto = ResponseDto.<StockDto>builder().payload(List.of(stock, stock)).build();
+
+        String expected = mapper.writeValueAsString(responseDto);
+        assertEquals(expected, new String(cachedMapper.writeValueAsBytes(responseDto), "UTF-8")); // the first one serializes it
+        assertEquals(expected, cachedMapper.writeValueAsString(responseDto));
+        assertEquals(1, stockJsonCache.size());
+    }
+
+    @Test
+    void shouldSerializeAgain_whenStockIsChangedOrItIsInvalidated() throws Exception {
+        StockDto stock = StockDto.builder().id(2L).name("Stock2").currentPrice(10L).version(0L).build();
+        cachedMapper.writeValueAsString(stock);
+
+        stock.setName("Stock2 renamed in memory"); // the same version, e.g. a dto changed by a client
+        assertEquals(mapper.writeValueAsString(stock), cachedMapper.writeValueAsString(stock));
+        stock.setCurrentPrice(11L);
+        stock.setVersion(1L);
+        assertEquals(mapper.writeValueAsString(stock), cachedMapper.writeValueAsString(stock));
+
+        long generation = stockJsonCache.generation();
+        stockJsonCache.invalidate(2L);
+        assertEquals(0, stockJsonCache.size());
+        assertEquals(generation + 1, stockJsonCache.generation());
+
+        StockDto withoutId = StockDto.builder().name("Stock3").build();
+        assertEquals(mapper.writeValueAsString(withoutId), cachedMapper.writeValueAsString(withoutId));
+        assertEquals(0, stockJsonCache.size());
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.stockp.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadConfigTest {
+
+    static boolean hasVirtualThreads() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    @Test
+    @EnabledIf("hasVirtualThreads")
+    void shouldRunTaskOnNamedVirtualThread_whenJvmHasVirtualThreads() throws Exception {
+        ExecutorService executor = VirtualThreadConfig.newVirtualThreadPerTaskExecutor("virtual-test-");
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+            assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+            assertTrue(thread.getName().startsWith("virtual-test-"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_18)
+    void shouldFailWithClearMessage_whenJvmHasNoVirtualThreads() {
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> VirtualThreadConfig.newVirtualThreadPerTaskExecutor("virtual-test-"));
+        assertTrue(thrown.getMessage().contains("threads.virtual.enabled needs Java 21"));
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.stockp.controller;
+
+import com.example.stockp.IntegrationTest;
+import com.example.stockp.repository.StockRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for the {@link AdminEndpointImpl} REST controller.
+ */
+@IntegrationTest
+class AdminEndpointImplIT {
+
+    private static final String IMPORT_API_URL = "/api/admin/stocks/import";
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void shouldImportValidRowsAndReportRejectedOnes_whenCsvIsImported() throws Exception {
+        String prefix = "Stock#Import-" + ThreadLocalRandom.current().nextInt(100000) + "-";
+        String csv = "id,name,current_price,last_update\n" +
+                "1," + prefix + "1,10,\n" +
+                "2,\"" + prefix + "2, \"\"quoted\"\"\",20,\n" +
+                "3," + prefix + "3,not-a-number,\n" +
+                "4," + prefix + "1,40,\n" + // duplicate
+                "5,,50,\n"; // no name
+
+        mockMvc
+                .perform(post(IMPORT_API_URL).contentType("text/csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload[0].rows").value(5))
+                .andExpect(jsonPath("$.payload[0].created").value(2))
+                .andExpect(jsonPath("$.payload[0].rejected").value(3))
+                .andExpect(jsonPath("$.payload[0].errors[0].index").value(3))
+                .andExpect(jsonPath("$.payload[0].errors[0].error_code").value(4009))
+                .andExpect(jsonPath("$.payload[0].errors[1].index").value(4))
+                .andExpect(jsonPath("$.payload[0].errors[1].error_code").value(4005))
+                .andExpect(jsonPath("$.payload[0].errors[2].index").value(5));
+
+        assertEquals(20L, stockRepository.findByNameIn(List.of(prefix + "2, \"quoted\"")).get(0).getCurrentPrice());
+    }
+
+    @Test
+    void shouldImportStocks_whenJsonArrayOrNdjsonIsImported() throws Exception {
+        String prefix = "Stock#Import-" + ThreadLocalRandom.current().nextInt(100000) + "-";
+        String json = "[{\"id\":7,\"name\":\"" + prefix + "1\",\"current_price\":10,\"extra\":{\"a\":[1,2]}}," +
+                "{\"name\":\"" + prefix + "2\",\"current_price\":null}]";
+        String ndjson = "{\"name\":\"" + prefix + "3\",\"current_price\":30}\n{\"name\":\"" + prefix + "4\"}\n";
+
+        mockMvc
+                .perform(post(IMPORT_API_URL).contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload[0].created").value(2));
+        mockMvc
+                .perform(post(IMPORT_API_URL).contentType("application/x-ndjson").content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload[0].created").value(2));
+
+        assertEquals(1, stockRepository.findByNameIn(List.of(prefix + "4")).size());
+    }
+
+    @Test
+    void shouldRejectRowAndImportTheNextOne_whenNameIsNotAString() throws Exception {
+        String prefix = "Stock#Import-" + ThreadLocalRandom.current().nextInt(100000) + "-";
+        String json = "[{\"name\":{\"first\":\"a\",\"current_price\":1},\"current_price\":10}," +
+                "{\"name\":[\"b\"],\"current_price\":20}," +
+                "{\"name\":\"" + prefix + "1\",\"current_price\":30}]";
+
+        mockMvc
+                .perform(post(IMPORT_API_URL).contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload[0].rows").value(3))
+                .andExpect(jsonPath("$.payload[0].created").value(1))
+                .andExpect(jsonPath("$.payload[0].errors[0].index").value(1))
+                .andExpect(jsonPath("$.payload[0].errors[0].error_code").value(4009))
+                .andExpect(jsonPath("$.payload[0].errors[1].index").value(2));
+
+        assertEquals(30L, stockRepository.findByNameIn(List.of(prefix + "1")).get(0).getCurrentPrice());
+    }
+
+    @Test
+    void shouldGetBadRequest_whenJsonIsMalformed() throws Exception {
+        mockMvc
+                .perform(post(IMPORT_API_URL).contentType(MediaType.APPLICATION_JSON).content("[{\"name\": }]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error_code").value(4001));
+    }
+}
@@ -1,27 +1,47 @@
 package com.example.stockp.controller;
 
 import com.example.stockp.IntegrationTest;
+import com.example.stockp.config.MetricsConfig;
+import com.example.stockp.config.ServiceMetricsAspect;
+import com.example.stockp.config.SqlStatementCounter;
 import com.example.stockp.entity.Stock;
 import com.example.stockp.exception.BadRequestException;
 import com.example.stockp.exception.StockNotFoundException;
 import com.example.stockp.repository.StockRepository;
+import com.example.stockp.service.StockService;
+import com.example.stockp.service.StockTickService;
 import com.example.stockp.service.dto.ResponseDto;
 import com.example.stockp.service.dto.StockDto;
 import com.example.stockp.service.mapper.StockMapper;
+import com.example.stockp.service.impl.StockIdFilter;
 import com.example.stockp.util.ConvertorUtil;
 import com.google.gson.Gson;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
+import static com.example.stockp.SqlStatementCountUtil.countStatements;
+import static com.example.stockp.SqlStatementCountUtil.maxStatements;
+import static com.example.stockp.config.SqlStatementCounter.Type.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -42,9 +62,17 @@ class StockEndpointImplIT {
     private static final String PARTIAL_UPDATED_NAME = "Partial Updated Stock#1";
 
     private static final Long CURRENT_PRICE = 1L;
+    private static final Long UPDATED_CURRENT_PRICE = 2L;
 
     private static final String ENTITY_API_URL = "/api/stocks";
     private static final String ENTITY_API_URL_ID = ENTITY_API_URL + "/{id}";
+    private static final String ENTITY_API_URL_BATCH = ENTITY_API_URL + "/batch";
+    private static final String ENTITY_API_URL_TICKS = ENTITY_API_URL + "/ticks";
+    private static final String ENTITY_API_URL_HISTORY = ENTITY_API_URL_ID + "/history";
+    private static final String ENTITY_API_URL_EXPORT = ENTITY_API_URL + "/export";
+    private static final String ENTITY_API_URL_STREAM = ENTITY_API_URL + "/stream";
+    private static final String ENTITY_API_URL_CATALOG = ENTITY_API_URL + "/catalog";
+    private static final String ENTITY_API_URL_BY_IDS = ENTITY_API_URL + "/by-ids";
 
     @Autowired
     private StockRepository stockRepository;
@@ -52,9 +80,24 @@ class StockEndpointImplIT {
     @Autowired
     private StockMapper stockMapper;
 
+    @Autowired
+    private StockTickService stockTickService;
+
+    @Autowired
+    private StockService stockService;
+
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StockIdFilter stockIdFilter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
 
     /**
      * Create an entity for this test.
@@ -180,6 +223,24 @@ class StockEndpointImplIT {
                 .andExpect(jsonPath("$._links.first").exists());
     }
 
+    @Test
+    @Transactional
+    void shouldReturnSliceWithoutTotal_whenGetAllStockIsCalledWithTotalFalse() throws Exception {
+        stockRepository.saveAndFlush(createEntity().name("Stock#2-" + ThreadLocalRandom.current().nextInt(1000)));
+        stockRepository.saveAndFlush(createEntity().name("Stock#2-" + ThreadLocalRandom.current().nextInt(1000, 2000)));
+
+        mockMvc
+                .perform(get(ENTITY_API_URL + "?page=1&size=1&total=false"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Page-Current", "1"))
+                .andExpect(header().doesNotExist("X-Total-Count"))
+                .andExpect(header().doesNotExist("X-Page-Total"))
+                .andExpect(jsonPath("$.payload.length()").value(1))
+                .andExpect(jsonPath("$._links.next").exists())
+                .andExpect(jsonPath("$._links.prev").exists())
+                .andExpect(jsonPath("$._links.last").doesNotExist());
+    }
+
     @Test
     @Transactional
     void shouldFindOne_whenGetByIdIsCalled() throws Exception {
@@ -199,6 +260,320 @@ class StockEndpointImplIT {
                 .andExpect(jsonPath("$.payload[0].last_update").exists());
     }
 
+    @Test
+    @Transactional
+    void shouldFindStocksInOrderOfIdsAndReportMissingOnes_whenGetByIdsIsCalled() throws Exception {
+        Stock stock1 = stockRepository.save(createEntity().name("Stock#multi-1-" + ThreadLocalRandom.current().nextInt(1000)));
+        Stock stock2 = stockRepository.saveAndFlush(createEntity().name("Stock#multi-2-" + ThreadLocalRandom.current().nextInt(1000)));
+        long missingId = stock2.getId() + 1000;
+        String ids = stock2.getId() + "," + missingId + "," + stock1.getId();
+
+        mockMvc.perform(get(ENTITY_API_URL).param("ids", ids))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload.length()").value(2))
+                .andExpect(jsonPath("$.payload[0].id").value(stock2.getId().intValue()))
+                .andExpect(jsonPath("$.payload[1].id").value(stock1.getId().intValue()))
+                .andExpect(jsonPath("$.errors['" + missingId + "']").exists())
+                .andExpect(maxStatements(SELECT, 1));
+
+        mockMvc.perform(post(ENTITY_API_URL_BY_IDS).contentType(MediaType.APPLICATION_JSON).content("[" + ids + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload[0].id").value(stock2.getId().intValue()))
+                .andExpect(jsonPath("$.payload[1].id").value(stock1.getId().intValue()))
+                .andExpect(jsonPath("$.errors['" + missingId + "']").exists());
+
+        mockMvc.perform(post(ENTITY_API_URL_BY_IDS).contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void shouldReturnNotModified_whenGetByIdIsCalledWithTheCurrentETag() throws Exception {
+        Stock stock = stockRepository.saveAndFlush(createEntity().name("Stock#3-" + ThreadLocalRandom.current().nextInt(1000, 2000)));
+
+        String eTag = mockMvc.perform(get(ENTITY_API_URL_ID, stock.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get(ENTITY_API_URL_ID, stock.getId()).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(content().string(""));
+
+        Thread.sleep(5); // last_update has millisecond precision
+        stock.setCurrentPrice(CURRENT_PRICE + 1);
+        stockRepository.saveAndFlush(stock);
+
+        String newETag = mockMvc.perform(get(ENTITY_API_URL_ID, stock.getId()).header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload[0].current_price").value(CURRENT_PRICE + 1))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(eTag, newETag);
+    }
+
+    @Test
+    @Transactional
+    void shouldReturnNotModified_whenGetAllStockIsCalledWithTheCurrentETag() throws Exception {
+        stockRepository.saveAndFlush(createEntity().name("Stock#2-" + ThreadLocalRandom.current().nextInt(2000, 3000)));
+        String url = ENTITY_API_URL + "?page=0&size=2&sort=id,desc";
+
+        String eTag = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get(url).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+
+        String sliceETag = mockMvc.perform(get(url + "&total=false"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get(url + "&total=false").header("If-None-Match", sliceETag))
+                .andExpect(status().isNotModified());
+
+        stockRepository.saveAndFlush(createEntity().name("Stock#2-" + ThreadLocalRandom.current().nextInt(3000, 4000)));
+
+        mockMvc.perform(get(url).header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"));
+        mockMvc.perform(get(url + "&total=false").header("If-None-Match", sliceETag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @Transactional
+    void shouldReturnPreconditionFailed_whenUpdateIsCalledWithAnOldETag() throws Exception {
+        Stock stock = stockRepository.saveAndFlush(createEntity().name("Stock#4-" + ThreadLocalRandom.current().nextInt(1000)));
+        String eTag = mockMvc.perform(get(ENTITY_API_URL_ID, stock.getId()))
+                .andReturn().getResponse().getHeader("ETag");
+        long version = stock.getVersion();
+        StockDto stockDto = StockDto.builder().id(stock.getId()).name(stock.getName()).currentPrice(CURRENT_PRICE + 1).build();
+
+        String newETag = mockMvc.perform(put(ENTITY_API_URL_ID, stock.getId()).header("If-Match", eTag)
+                        .contentType(MediaType.APPLICATION_JSON).content(new Gson().toJson(stockDto)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload[0].current_price").value(CURRENT_PRICE + 1))
+                .andExpect(jsonPath("$.payload[0].version").value(version + 1))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(eTag, newETag);
+
+        // the second writer still has the old ETag
+        stockDto.setCurrentPrice(CURRENT_PRICE + 2);
+        mockMvc.perform(patch(ENTITY_API_URL_ID, stock.getId()).header("If-Match", eTag)
+                        .contentType(MediaType.APPLICATION_JSON).content(new Gson().toJson(stockDto)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.error_code").value(4120));
+        mockMvc.perform(patch(ENTITY_API_URL_ID, stock.getId()).header("If-Match", "W/" + newETag)
+                        .contentType(MediaType.APPLICATION_JSON).content(new Gson().toJson(stockDto)))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(patch(ENTITY_API_URL_ID, stock.getId()).header("If-Match", newETag)
+                        .contentType(MediaType.APPLICATION_JSON).content(new Gson().toJson(stockDto)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload[0].current_price").value(CURRENT_PRICE + 2));
+    }
+
+    @Test
+    void shouldIssueAtMostExpectedSqlStatements_whenStockIsCreatedReadUpdatedAndDeleted() throws Exception {
+        // a stock may be read from the second level cache, these are the statements of a cold cache
+        String name = "Stock#7-" + ThreadLocalRandom.current().nextInt(1000);
+        String body = mockMvc.perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON)
+                        .content(new Gson().toJson(StockDto.builder().name(name).currentPrice(CURRENT_PRICE).build())))
+                .andExpect(status().isCreated())
+                .andExpect(maxStatements(1))
+                .andReturn().getResponse().getContentAsString();
+        StockDto created = ConvertorUtil.toResponseDto(body).getPayload().get(0);
+
+        mockMvc.perform(get(ENTITY_API_URL_ID, created.getId()))
+                .andExpect(status().isOk())
+                .andExpect(maxStatements(SELECT, 1))
+                .andExpect(maxStatements(1));
+        mockMvc.perform(get(ENTITY_API_URL).param("page", "0").param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(maxStatements(SELECT, 1))
+                .andExpect(maxStatements(1));
+        mockMvc.perform(patch(ENTITY_API_URL_ID, created.getId()).contentType("application/merge-patch+json")
+                        .content(new Gson().toJson(StockDto.builder().id(created.getId()).currentPrice(2L).build())))
+                .andExpect(status().isOk())
+                .andExpect(maxStatements(SELECT, 1))
+                .andExpect(maxStatements(UPDATE, 1))
+                .andExpect(maxStatements(2));
+        mockMvc.perform(put(ENTITY_API_URL_ID, created.getId()).contentType(MediaType.APPLICATION_JSON)
+                        .content(new Gson().toJson(StockDto.builder().id(created.getId()).name(name).currentPrice(3L).build())))
+                .andExpect(status().isOk())
+                .andExpect(maxStatements(SELECT, 1))
+                .andExpect(maxStatements(UPDATE, 1))
+                .andExpect(maxStatements(2));
+        mockMvc.perform(get(ENTITY_API_URL + "/by-name/{name}", name))
+                .andExpect(status().isOk())
+                .andExpect(maxStatements(SELECT, 1))
+                .andExpect(maxStatements(1));
+        mockMvc.perform(delete(ENTITY_API_URL_ID, created.getId()))
+                .andExpect(status().isNoContent())
+                .andExpect(maxStatements(SELECT, 1))
+                .andExpect(maxStatements(DELETE, 1))
+                .andExpect(maxStatements(2));
+        mockMvc.perform(get(ENTITY_API_URL_ID, created.getId()))
+                .andExpect(status().isNotFound())
+                .andExpect(maxStatements(SELECT, 1))
+                .andExpect(maxStatements(1));
+    }
+
+    @Test
+    void shouldPartiallyUpdateWithOneSelectAndOneUpdate_whenServiceIsCalled() throws Throwable {
+        Stock stock = stockRepository.save(new Stock().name("Stock#8-" + ThreadLocalRandom.current().nextInt(1000)).currentPrice(CURRENT_PRICE));
+
+        SqlStatementCounter.Counts counts = countStatements(() ->
+                stockService.partialUpdate(StockDto.builder().id(stock.getId()).currentPrice(CURRENT_PRICE + 1).build()));
+
+        assertThat(counts.get(SELECT)).isLessThanOrEqualTo(1); // neither an exists query nor a select of merge
+        assertThat(counts.get(UPDATE)).isEqualTo(1);
+        assertThat(counts.total()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void shouldGetGzipCatalogAndMakeItAgain_whenStockIsChanged() throws Exception {
+        Stock stock = stockRepository.save(new Stock().name("Stock#9-" + ThreadLocalRandom.current().nextInt(1000)).currentPrice(CURRENT_PRICE));
+
+        MvcResult result = mockMvc.perform(get(ENTITY_API_URL_CATALOG).header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Content-Type", "application/x-ndjson"))
+                .andReturn();
+        String eTag = result.getResponse().getHeader("ETag");
+        String catalog = new String(new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray())).readAllBytes(),
+                StandardCharsets.UTF_8);
+        assertThat(catalog).contains("\"name\":\"" + stock.getName() + "\"");
+        assertThat(catalog.split("\n")).hasSize(Integer.parseInt(result.getResponse().getHeader("X-Total-Count")));
+
+        mockMvc.perform(get(ENTITY_API_URL_CATALOG).header("Accept-Encoding", "gzip").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(ENTITY_API_URL_CATALOG)) // without gzip it is decompressed
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string(catalog));
+
+        mockMvc.perform(patch(ENTITY_API_URL_ID, stock.getId()).contentType(MediaType.APPLICATION_JSON)
+                        .content(new Gson().toJson(StockDto.builder().id(stock.getId()).currentPrice(CURRENT_PRICE + 1).build())))
+                .andExpect(status().isOk());
+        awaitCatalogChanged(eTag); // it is made again in the background
+
+        double hits = meterRegistry.get("json.cache.gets").tag("result", "hit").functionCounter().count();
+        mockMvc.perform(get(ENTITY_API_URL_ID, stock.getId())) // its JSON was cached by the catalog
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload[0].current_price").value(CURRENT_PRICE + 1));
+        assertThat(meterRegistry.get("json.cache.gets").tag("result", "hit").functionCounter().count()).isGreaterThan(hits);
+    }
+
+    @Test
+    void shouldSearchStocksByPrefixAndTypo_whenSearchIsCalled() throws Exception {
+        String name = "Searchable-" + ThreadLocalRandom.current().nextInt(1000);
+        String body = mockMvc.perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON)
+                        .content(new Gson().toJson(StockDto.builder().name(name).currentPrice(CURRENT_PRICE).build())))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = ConvertorUtil.toResponseDto(body).getPayload().get(0).getId();
+
+        mockMvc.perform(get(ENTITY_API_URL + "/search").param("q", "searchab"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload[0].id").value(id.intValue()))
+                .andExpect(jsonPath("$.payload[0].name").value(name))
+                .andExpect(jsonPath("$.payload[0].match").value("prefix"));
+        mockMvc.perform(get(ENTITY_API_URL + "/search").param("q", name.replace("Search", "Saerch")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload[0].id").value(id.intValue()))
+                .andExpect(jsonPath("$.payload[0].match").value("fuzzy"));
+        mockMvc.perform(get(ENTITY_API_URL + "/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(delete(ENTITY_API_URL_ID, id)).andExpect(status().isNoContent());
+        mockMvc.perform(get(ENTITY_API_URL + "/search").param("q", name))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload.length()").value(0));
+    }
+
+    @Test
+    void shouldAnswerNotFoundWithoutQuery_whenIdIsNotInIdFilter() throws Exception {
+        String prefix = "Stock#IdFilter-" + ThreadLocalRandom.current().nextInt(100000) + "-";
+        Stock deleted = stockRepository.saveAndFlush(createEntity().name(prefix + "deleted"));
+        Stock stock = stockRepository.saveAndFlush(createEntity().name(prefix + "kept"));
+        stockRepository.deleteById(deleted.getId());
+        stockIdFilter.rebuild(); // the deleted id is dropped
+
+        mockMvc.perform(get(ENTITY_API_URL_ID, deleted.getId()))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error_code").value(4040))
+                .andExpect(maxStatements(0)); // the stock is not loaded
+        mockMvc.perform(get(ENTITY_API_URL_ID, stock.getId()))
+                .andExpect(status().isOk());
+
+        Stock created = stockRepository.saveAndFlush(createEntity().name(prefix + "created"));
+        mockMvc.perform(get(ENTITY_API_URL_ID, created.getId()))
+                .andExpect(status().isOk());
+
+        // Another instance inserts a stock under the max id of the scan, hibernate of this instance does not see it
+        jdbcTemplate.update("insert into T_STOCK (ID, NAME, CURRENT_PRICE, LAST_UPDATE, VERSION) values (?, ?, 1, ?, 0)",
+                deleted.getId(), prefix + "other-instance", new Date());
+        try {
+            stockIdFilter.sync(); // it runs every id-filter.sync-interval-ms
+            mockMvc.perform(get(ENTITY_API_URL_ID, deleted.getId()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.payload[0].name").value(prefix + "other-instance"));
+        } finally {
+            jdbcTemplate.update("delete from T_STOCK where ID = ?", deleted.getId());
+        }
+    }
+
+    @Test
+    void shouldNotMatchHistoryOfStock_whenNameOfStockIsHistory() throws Exception {
+        mockMvc.perform(get(ENTITY_API_URL + "/by-name/history"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error_code").value(4040));
+    }
+
+    @Test
+    void shouldTimeEndpointServiceAndRepository_whenStockIsNotFound() throws Exception {
+        mockMvc.perform(get(ENTITY_API_URL_ID, Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+
+        assertThat(meterRegistry.get("http.server.requests").tag("uri", "/api/stocks/{id}")
+                .tag(MetricsConfig.ERROR_CODE_TAG, "4040").timer().count()).isPositive();
+        assertThat(meterRegistry.get(ServiceMetricsAspect.METRIC_NAME).tag("method", "findOne").tag("outcome", "ERROR")
+                .tag(MetricsConfig.ERROR_CODE_TAG, "4040").timer().count()).isPositive();
+        assertThat(meterRegistry.get("spring.data.repository.invocations").tag("repository", "StockRepository")
+                .tag("method", "findById").timer().count()).isPositive();
+    }
+
+    @Test
+    void shouldFindStockByName_whenItIsCreatedRenamedAndDeleted() throws Exception {
+        String name = "Stock#6-" + ThreadLocalRandom.current().nextInt(1000);
+        String body = mockMvc.perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON)
+                        .content(new Gson().toJson(StockDto.builder().name(name).currentPrice(CURRENT_PRICE).build())))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        StockDto created = ConvertorUtil.toResponseDto(body).getPayload().get(0);
+
+        mockMvc.perform(get(ENTITY_API_URL + "/by-name/{name}", name))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.payload[0].id").value(created.getId().intValue()))
+                .andExpect(jsonPath("$.payload[0].name").value(name));
+
+        StockDto renamed = StockDto.builder().id(created.getId()).name(name + "-renamed").currentPrice(CURRENT_PRICE).build();
+        mockMvc.perform(put(ENTITY_API_URL_ID, created.getId()).contentType(MediaType.APPLICATION_JSON).content(new Gson().toJson(renamed)))
+                .andExpect(status().isOk());
+        mockMvc.perform(get(ENTITY_API_URL + "/by-name/{name}", name + "-renamed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload[0].id").value(created.getId().intValue()));
+        mockMvc.perform(get(ENTITY_API_URL + "/by-name/{name}", name))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(delete(ENTITY_API_URL_ID, created.getId())).andExpect(status().isNoContent());
+        mockMvc.perform(get(ENTITY_API_URL + "/by-name/{name}", name + "-renamed"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error_code").value(4040));
+    }
+
     @Test
     @Transactional
     void shouldUpdateStockWithPut_whenUpdateIsCalled() throws Exception {
@@ -425,4 +800,330 @@ class StockEndpointImplIT {
         assertThat(databaseSizeAfterCreate).isEqualTo(databaseSizeBeforeCreate);// Nothing created
     }
 
+    @Test
+    void shouldCreateValidStocksAndReportFailedOnes_whenCreateStocksIsCalled() throws Exception {
+        String prefix = "Stock#Batch-" + ThreadLocalRandom.current().nextInt(100000) + "-";
+        Stock existingStock = stockRepository.saveAndFlush(createEntity().name(prefix + "existing"));
+        long databaseSizeBeforeCreate = stockRepository.count();
+
+        StockDto[] stockDtos = {
+                StockDto.builder().name(prefix + "1").currentPrice(CURRENT_PRICE).build(),
+                StockDto.builder().name(prefix + "1").currentPrice(CURRENT_PRICE).build(), // duplicate in the batch
+                StockDto.builder().name(existingStock.getName()).currentPrice(CURRENT_PRICE).build(), // duplicate in the database
+                StockDto.builder().name(null).currentPrice(CURRENT_PRICE).build(), // invalid
+                StockDto.builder().name(prefix + "2").currentPrice(CURRENT_PRICE).build(),
+        };
+        mockMvc
+                .perform(post(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON)
+                        .content(new Gson().toJson(Arrays.asList(stockDtos))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.error_code").value(0))
+                .andExpect(jsonPath("$.payload.length()").value(5))
+                .andExpect(jsonPath("$.payload[0].error_code").value(0))
+                .andExpect(jsonPath("$.payload[0].stock.id").exists())
+                .andExpect(jsonPath("$.payload[1].error_code").value(4005))
+                .andExpect(jsonPath("$.payload[2].error_code").value(4005))
+                .andExpect(jsonPath("$.payload[3].error_code").value(4009))
+                .andExpect(jsonPath("$.payload[4].index").value(4))
+                .andExpect(jsonPath("$.payload[4].error_code").value(0))
+                .andExpect(jsonPath("$.payload[4].stock.name").value(prefix + "2"));
+
+        assertThat(stockRepository.count()).isEqualTo(databaseSizeBeforeCreate + 2);
+    }
+
+    @Test
+    void shouldCountJdbcBatchAsOneInsert_whenCreateStocksIsCalled() throws Exception {
+        String prefix = "Stock#BatchCount-" + ThreadLocalRandom.current().nextInt(100000) + "-";
+        StockDto[] stockDtos = {
+                StockDto.builder().name(prefix + "1").currentPrice(CURRENT_PRICE).build(),
+                StockDto.builder().name(prefix + "2").currentPrice(CURRENT_PRICE).build(),
+                StockDto.builder().name(prefix + "3").currentPrice(CURRENT_PRICE).build(),
+        };
+        MvcResult result = mockMvc
+                .perform(post(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON)
+                        .content(new Gson().toJson(Arrays.asList(stockDtos))))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(result.getResponse().getHeader("X-Sql-Statements")).contains("insert=1"); // three rows, one jdbc batch
+    }
+
+    @Test
+    void shouldGetBadRequest_whenCreateStocksIsCalledWithEmptyBatch() throws Exception {
+        mockMvc
+                .perform(post(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error_code").value(4001));
+    }
+
+    @Test
+    void shouldUpdateStocksAndReportFailedOnes_whenPartialUpdateStocksIsCalled() throws Exception {
+        String prefix = "Stock#BatchUpdate-" + ThreadLocalRandom.current().nextInt(100000) + "-";
+        Stock stock1 = stockRepository.saveAndFlush(createEntity().name(prefix + "1"));
+        Stock stock2 = stockRepository.saveAndFlush(createEntity().name(prefix + "2"));
+        Stock other = stockRepository.saveAndFlush(createEntity().name(prefix + "other"));
+
+        StockDto[] stockDtos = {
+                StockDto.builder().id(stock1.getId()).currentPrice(UPDATED_CURRENT_PRICE).build(),
+                StockDto.builder().id(stock2.getId()).name(prefix + "2-renamed").build(),
+                StockDto.builder().id(stock1.getId()).currentPrice(UPDATED_CURRENT_PRICE).build(), // repeated
+                StockDto.builder().id(other.getId() + 1000).currentPrice(UPDATED_CURRENT_PRICE).build(), // missing
+                StockDto.builder().id(other.getId()).name(stock1.getName()).build(), // name of another stock
+                StockDto.builder().currentPrice(UPDATED_CURRENT_PRICE).build(), // without id
+        };
+        mockMvc
+                .perform(patch(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON)
+                        .content(new Gson().toJson(Arrays.asList(stockDtos))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload.length()").value(6))
+                .andExpect(jsonPath("$.payload[0].error_code").value(0))
+                .andExpect(jsonPath("$.payload[0].stock.current_price").value(UPDATED_CURRENT_PRICE.longValue()))
+                .andExpect(jsonPath("$.payload[0].stock.name").value(stock1.getName()))
+                .andExpect(jsonPath("$.payload[1].error_code").value(0))
+                .andExpect(jsonPath("$.payload[1].stock.version").value(stock2.getVersion() + 1))
+                .andExpect(jsonPath("$.payload[2].error_code").value(4001))
+                .andExpect(jsonPath("$.payload[3].error_code").value(4040))
+                .andExpect(jsonPath("$.payload[4].error_code").value(4005))
+                .andExpect(jsonPath("$.payload[5].error_code").value(4001))
+                .andExpect(maxStatements(SELECT, 2)) // the stocks by IN and the names
+                .andExpect(maxStatements(UPDATE, 2));
+
+        assertThat(stockRepository.findById(stock1.getId()).orElseThrow().getCurrentPrice()).isEqualTo(UPDATED_CURRENT_PRICE);
+        assertThat(stockRepository.findById(stock2.getId()).orElseThrow().getName()).isEqualTo(prefix + "2-renamed");
+        assertThat(stockRepository.findById(other.getId()).orElseThrow().getName()).isEqualTo(prefix + "other");
+    }
+
+    @Test
+    void shouldDeleteStocksAndReportMissingOnes_whenDeleteStocksIsCalled() throws Exception {
+        String prefix = "Stock#BatchDelete-" + ThreadLocalRandom.current().nextInt(100000) + "-";
+        Stock stock1 = stockRepository.saveAndFlush(createEntity().name(prefix + "1"));
+        Stock stock2 = stockRepository.saveAndFlush(createEntity().name(prefix + "2"));
+        long databaseSizeBeforeDelete = stockRepository.count();
+
+        String ids = "[" + stock1.getId() + "," + (stock2.getId() + 1000) + "," + stock2.getId() + "," + stock1.getId() + "]";
+        mockMvc
+                .perform(delete(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON).content(ids))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload[0].error_code").value(0))
+                .andExpect(jsonPath("$.payload[0].stock.id").value(stock1.getId().intValue()))
+                .andExpect(jsonPath("$.payload[1].error_code").value(4040))
+                .andExpect(jsonPath("$.payload[2].error_code").value(0))
+                .andExpect(jsonPath("$.payload[3].error_code").value(4001))
+                .andExpect(maxStatements(SELECT, 1))
+                .andExpect(maxStatements(DELETE, 2));
+
+        assertThat(stockRepository.count()).isEqualTo(databaseSizeBeforeDelete - 2);
+        assertThat(stockRepository.findAllById(List.of(stock1.getId(), stock2.getId()))).isEmpty();
+
+        mockMvc
+                .perform(delete(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldWalkAllStocksInOrder_whenGetAllStocksAfterIsCalledByCurrentPrice() throws Exception {
+        String prefix = "Stock#Keyset-" + ThreadLocalRandom.current().nextInt(100000) + "-";
+        //equal prices check the tie-breaker, null price checks the nulls come last in descending order
+        stockRepository.saveAndFlush(createEntity().name(prefix + "1").currentPrice(7L));
+        stockRepository.saveAndFlush(createEntity().name(prefix + "2").currentPrice(7L));
+        stockRepository.saveAndFlush(createEntity().name(prefix + "3").currentPrice(null));
+        stockRepository.saveAndFlush(createEntity().name(prefix + "4").currentPrice(null));
+        List<Long> idsExpected = stockRepository.findAll().stream()
+                .sorted(Comparator.comparing(Stock::getCurrentPrice, Comparator.nullsFirst(Comparator.<Long>naturalOrder()))
+                        .thenComparing(Stock::getId).reversed())
+                .map(Stock::getId).collect(Collectors.toList());
+
+        List<Long> idsActual = new ArrayList<>();
+        String after = "";
+        do {
+            MvcResult result = mockMvc
+                    .perform(get(ENTITY_API_URL).param("after", after).param("size", "2")
+                            .param("order", "current_price").param("direction", "desc"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist("X-Total-Count"))
+                    .andReturn();
+            ConvertorUtil.toResponseDto(result.getResponse().getContentAsString()).getPayload()
+                    .forEach(stockDto -> idsActual.add(stockDto.getId()));
+            after = result.getResponse().getHeader("X-Next-Cursor");
+        } while (after != null);
+
+        assertEquals(idsExpected, idsActual);
+    }
+
+    @Test
+    void shouldReturnNextLink_whenGetAllStocksAfterIsCalledForTheFirstPage() throws Exception {
+        stockRepository.saveAndFlush(createEntity().name("Stock#Keyset-" + ThreadLocalRandom.current().nextInt(100000)));
+        mockMvc
+                .perform(get(ENTITY_API_URL + "?after=&size=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload.length()").value(1))
+                .andExpect(jsonPath("$._links.next.href").exists())
+                .andExpect(jsonPath("$._links.last").doesNotExist());
+    }
+
+    @Test
+    void shouldGetBadRequest_whenGetAllStocksAfterIsCalledWithInvalidCursor() throws Exception {
+        mockMvc
+                .perform(get(ENTITY_API_URL + "?after=not-a-cursor&size=1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error_code").value(4001));
+    }
+
+    @Test
+    void shouldWriteTheLatestPrice_whenTicksAreAcceptedAndFlushed() throws Exception {
+        String name = "Stock#Tick-" + ThreadLocalRandom.current().nextInt(100000);
+        Stock stock = stockRepository.saveAndFlush(createEntity().name(name));
+        long lastUpdate = stock.getLastUpdate().getTime(); // a tick older than the last update of the stock is dropped
+        String ticks = "[{\"id\":" + stock.getId() + ",\"price\":30,\"timestamp\":" + (lastUpdate + 3) + "}," +
+                "{\"id\":" + stock.getId() + ",\"price\":10,\"timestamp\":" + (lastUpdate + 1) + "}," +
+                "{\"name\":\"" + name + "\",\"price\":20,\"timestamp\":" + (lastUpdate + 2) + "}]";
+
+        mockMvc
+                .perform(post(ENTITY_API_URL_TICKS).contentType(MediaType.APPLICATION_JSON).content(ticks))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.error_code").value(0));
+        stockTickService.flush();
+
+        assertEquals(30L, stockRepository.findById(stock.getId()).orElseThrow().getCurrentPrice());
+    }
+
+    @Test
+    void shouldGetBadRequest_whenTickIsInTheFuture() throws Exception {
+        String ticks = "[{\"id\":1,\"price\":30,\"timestamp\":" + (System.currentTimeMillis() + 3_600_000) + "}]";
+        mockMvc
+                .perform(post(ENTITY_API_URL_TICKS).contentType(MediaType.APPLICATION_JSON).content(ticks))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error_code").value(4001));
+    }
+
+    @Test
+    void shouldGetBadRequest_whenTickHasNoPrice() throws Exception {
+        mockMvc
+                .perform(post(ENTITY_API_URL_TICKS).contentType(MediaType.APPLICATION_JSON).content("[{\"id\":1}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error_code").value(4001));
+    }
+
+    @Test
+    void shouldReturnPriceHistory_whenPriceOfStockIsChanged() throws Exception {
+        Stock stock = stockRepository.saveAndFlush(createEntity().name("Stock#History-" + ThreadLocalRandom.current().nextInt(100000)).currentPrice(10L));
+        StockDto stockDtoForPartialUpdate = StockDto.builder().id(stock.getId()).currentPrice(20L).build();
+        mockMvc
+                .perform(patch(ENTITY_API_URL_ID, stock.getId()).contentType(MediaType.APPLICATION_JSON)
+                        .content(new Gson().toJson(stockDtoForPartialUpdate)))
+                .andExpect(status().isOk());
+
+        mockMvc
+                .perform(get(ENTITY_API_URL_HISTORY, stock.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload.length()").value(2))
+                .andExpect(jsonPath("$.payload[0].price").value(10))
+                .andExpect(jsonPath("$.payload[1].price").value(20));
+
+        mockMvc
+                .perform(get(ENTITY_API_URL_HISTORY, stock.getId()).param("to", "2000-01-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.payload.length()").value(0));
+    }
+
+    @Test
+    void shouldGetBadRequest_whenGetHistoryIsCalledWithFromAfterTo() throws Exception {
+        mockMvc
+                .perform(get(ENTITY_API_URL_HISTORY, 1L).param("from", "2022-10-07T00:00:00Z").param("to", "2022-10-06T00:00:00Z"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error_code").value(4001));
+    }
+
+    @Test
+    void shouldStreamAllStocks_whenExportIsCalledWithOneOrMoreWorkers() throws Exception {
+        String prefix = "Stock#Export-" + ThreadLocalRandom.current().nextInt(100000) + "-";
+        for (int i = 0; i < 5; i++) {
+            stockRepository.saveAndFlush(createEntity().name(prefix + i));
+        }
+        List<Long> idsExpected = stockRepository.findAll().stream().map(Stock::getId).sorted().collect(Collectors.toList());
+
+        for (String workers : new String[]{"1", "3"}) {
+            MvcResult result = mockMvc
+                    .perform(get(ENTITY_API_URL_EXPORT).param("workers", workers))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            String content = mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType("application/x-ndjson"))
+                    .andReturn().getResponse().getContentAsString();
+
+            List<Long> idsActual = content.lines().map(line -> new Gson().fromJson(line, StockDto.class).getId()).sorted().collect(Collectors.toList());
+            assertEquals(idsExpected, idsActual);
+        }
+    }
+
+    @Test
+    void shouldStreamCsvWithHeader_whenExportIsCalledWithCsvFormat() throws Exception {
+        Stock stock = stockRepository.saveAndFlush(createEntity().name("Stock,Export \"csv\" " + ThreadLocalRandom.current().nextInt(100000)));
+
+        MvcResult result = mockMvc
+                .perform(get(ENTITY_API_URL_EXPORT).param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String content = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(content.startsWith("id,name,current_price,last_update\n"));
+        assertTrue(content.contains(stock.getId() + ",\"" + stock.getName().replace("\"", "\"\"") + "\"," + stock.getCurrentPrice() + ","));
+    }
+
+    @Test
+    void shouldGetBadRequest_whenExportIsCalledWithUnknownFormat() throws Exception {
+        mockMvc
+                .perform(get(ENTITY_API_URL_EXPORT).param("format", "xml"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error_code").value(4001));
+    }
+
+    @Test
+    void shouldStreamSnapshotThenCommittedChanges_whenStreamIsSubscribed() throws Exception {
+        Stock stock = stockRepository.saveAndFlush(createEntity().name("Stock#Stream-" + ThreadLocalRandom.current().nextInt(100000)).currentPrice(10L));
+
+        MvcResult result = mockMvc
+                .perform(get(ENTITY_API_URL_STREAM).param("ids", stock.getId() + "," + Long.MAX_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitContent(result, "\"current_price\":10");
+
+        stock.setCurrentPrice(20L);
+        stockRepository.saveAndFlush(stock);
+        awaitContent(result, "\"current_price\":20");
+
+        stockRepository.deleteById(stock.getId());
+        awaitContent(result, "event:delete\ndata:{\"id\":" + stock.getId() + "}");
+        assertTrue(result.getResponse().getContentAsString().startsWith("event:stock\ndata:{\"id\":" + stock.getId()));
+    }
+
+    @Test
+    void shouldGetBadRequest_whenStreamIsSubscribedWithoutIds() throws Exception {
+        mockMvc
+                .perform(get(ENTITY_API_URL_STREAM).param("ids", ""))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void awaitCatalogChanged(String eTag) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mockMvc.perform(get(ENTITY_API_URL_CATALOG).header("Accept-Encoding", "gzip").header("If-None-Match", eTag))
+                .andReturn().getResponse().getStatus() == 304) {
+            if (System.currentTimeMillis() > deadline) fail("Catalog is not made again, ETag: " + eTag);
+            Thread.sleep(20);
+        }
+    }
+
+    private void awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!result.getResponse().getContentAsString().contains(expected)) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Stream does not have: " + expected + " content: " + result.getResponse().getContentAsString());
+            }
+            Thread.sleep(20);
+        }
+    }
 }
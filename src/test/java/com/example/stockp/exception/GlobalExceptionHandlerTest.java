@@ -0,0 +1,70 @@
+package com.example.stockp.exception;
+
+import com.example.stockp.exception.globalhandler.GlobalExceptionHandler;
+import com.example.stockp.service.dto.ResponseDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.net.ConnectException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GlobalExceptionHandlerTest {
+
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler();
+
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+
+    @BeforeEach
+    void bindRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void unbindRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void shouldRespondServiceUnavailableWithRetryAfter_whenNoConnectionIsFree() {
+        CannotCreateTransactionException ex = new CannotCreateTransactionException("Could not open JPA EntityManager for transaction",
+                new SQLTransientConnectionException("HikariPool-1 - Connection is not available, request timed out after 30000ms."));
+
+        ResponseEntity<ResponseDto<Void>> response = handler.handleCannotCreateTransactionException(ex);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(5030, response.getBody().getErrorCode());
+        assertEquals(5030, request.getAttribute(GlobalExceptionHandler.ERROR_CODE_ATTRIBUTE));
+    }
+
+    @Test
+    void shouldNotRespondServiceUnavailable_whenDatabaseIsDown() {
+        CannotCreateTransactionException ex = new CannotCreateTransactionException("Could not open JPA EntityManager for transaction",
+                new SQLTransientConnectionException("HikariPool-1 - Connection is not available, request timed out after 30000ms.",
+                        "08S01", new ConnectException("Connection refused")));
+
+        assertSame(ex, assertThrows(CannotCreateTransactionException.class, () -> handler.handleCannotCreateTransactionException(ex)));
+        assertNull(request.getAttribute(GlobalExceptionHandler.ERROR_CODE_ATTRIBUTE));
+    }
+
+    @Test
+    void shouldNotCaptureStackTrace_whenExceptionIsAClientError() {
+        assertEquals(0, new StockNotFoundException("1").getStackTrace().length);
+        assertEquals(0, new BadRequestException("bad").getStackTrace().length);
+        assertTrue(new AbstractThrowable("down", HttpStatus.SERVICE_UNAVAILABLE, 5030).getStackTrace().length > 0);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.stockp.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Open-loop load generator: requests are started at a fixed rate whatever the latency of the server, they do not wait for each other.
+ * The latency of a request is measured from the time it was scheduled to start, not from the time it was sent,
+ * so a stall of the server (or of the generator) is counted for every request that should have been sent during it (no coordinated omission).
+ * Latencies are recorded per operation in microseconds by HdrHistogram, an interval histogram is written to a .hlog file every report interval.
+ */
+class OpenLoopLoad<O extends Enum<O>> {
+
+    private final HttpClient httpClient;
+
+    private final Class<O> operationType;
+
+    private final Map<O, Recorder> recorders;
+
+    private final Map<O, Histogram> totals;
+
+    private final Map<O, LongAdder> failures; // transport errors and 5xx
+
+    private final Map<O, Map<Integer, LongAdder>> statuses;
+
+    private final AtomicLong inFlight = new AtomicLong();
+
+    OpenLoopLoad(HttpClient httpClient, Class<O> operationType) {
+        this.httpClient = httpClient;
+        this.operationType = operationType;
+        this.recorders = new EnumMap<>(operationType);
+        this.totals = new EnumMap<>(operationType);
+        this.failures = new EnumMap<>(operationType);
+        this.statuses = new EnumMap<>(operationType);
+        for (O operation : operationType.getEnumConstants()) {
+            recorders.put(operation, new Recorder(3));
+            totals.put(operation, new Histogram(3));
+            failures.put(operation, new LongAdder());
+            statuses.put(operation, new TreeMap<>());
+        }
+    }
+
+    /**
+     * Send requests at ratePerSecond for the duration. nextOperation picks the operation of every request, request builds it.
+     * The latencies are kept only if record is true, a warm-up is not recorded.
+     * handler sees every response, e.g. to keep the id of a created stock.
+     */
+    void run(int ratePerSecond, long durationMillis, Iterator<O> nextOperation, Function<O, HttpRequest> request,
+             ResponseHandler<O> handler, boolean record) throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        long start = System.nanoTime();
+        for (long i = 0; i * intervalNanos < durationNanos; i++) {
+            long intendedStart = start + i * intervalNanos;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            O operation = nextOperation.next();
+            inFlight.incrementAndGet();
+            CompletableFuture<HttpResponse<String>> response = httpClient.sendAsync(request.apply(operation), HttpResponse.BodyHandlers.ofString());
+            response.whenComplete((result, ex) -> {
+                try {
+                    if (record) record(operation, intendedStart, result, ex);
+                    if (result != null) handler.handle(operation, result);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+        while (inFlight.get() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Run with the interval histograms written every reportIntervalMillis to directory/operation.hlog.
+     */
+    void runAndLog(int ratePerSecond, long durationMillis, Iterator<O> nextOperation, Function<O, HttpRequest> request,
+                   ResponseHandler<O> handler, Path directory, long reportIntervalMillis) throws InterruptedException, IOException {
+        Files.createDirectories(directory);
+        Map<O, HistogramLogWriter> writers = new EnumMap<>(operationType);
+        long startMillis = System.currentTimeMillis();
+        for (O operation : operationType.getEnumConstants()) {
+            recorders.get(operation).reset(); // nothing of the warm-up
+            HistogramLogWriter writer = new HistogramLogWriter(directory.resolve(operation.name().toLowerCase(Locale.ROOT) + ".hlog").toFile());
+            writer.outputLogFormatVersion();
+            writer.outputStartTime(startMillis);
+            writer.setBaseTime(startMillis);
+            writer.outputLegend();
+            writers.put(operation, writer);
+        }
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> writeIntervals(writers), reportIntervalMillis, reportIntervalMillis, TimeUnit.MILLISECONDS);
+        try {
+            run(ratePerSecond, durationMillis, nextOperation, request, handler, true);
+        } finally {
+            reporter.shutdown();
+            reporter.awaitTermination(1, TimeUnit.MINUTES);
+            writeIntervals(writers);
+            writers.values().forEach(HistogramLogWriter::close);
+        }
+    }
+
+    /**
+     * p50, p99, p99.9 and max of every operation in milliseconds, the same to directory/summary.txt and a .hgrm percentile distribution per operation.
+     */
+    String report(Path directory, String settings) throws FileNotFoundException {
+        StringBuilder summary = new StringBuilder(settings).append(System.lineSeparator());
+        summary.append(String.format("%-10s %10s %10s %10s %10s %10s %10s  %s%n", "operation", "count", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "failures", "statuses"));
+        for (O operation : operationType.getEnumConstants()) {
+            Histogram histogram = totals.get(operation);
+            summary.append(String.format("%-10s %10d %10.3f %10.3f %10.3f %10.3f %10d  %s%n", operation, histogram.getTotalCount(),
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()), failures.get(operation).sum(),
+                    statuses.get(operation)));
+            try (PrintStream out = new PrintStream(directory.resolve(operation.name().toLowerCase(Locale.ROOT) + ".hgrm").toFile())) {
+                histogram.outputPercentileDistribution(out, 1000.0); // microseconds to milliseconds
+            }
+        }
+        try (PrintStream out = new PrintStream(directory.resolve("summary.txt").toFile())) {
+            out.print(summary);
+        }
+        return summary.toString();
+    }
+
+    long failures() {
+        return failures.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    long count() {
+        return totals.values().stream().mapToLong(Histogram::getTotalCount).sum();
+    }
+
+    private void record(O operation, long intendedStart, HttpResponse<String> response, Throwable ex) {
+        recorders.get(operation).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart));
+        if (ex != null || response.statusCode() >= 500) failures.get(operation).increment();
+        int status = ex != null ? 0 : response.statusCode(); // 0 is a transport error
+        Map<Integer, LongAdder> counts = statuses.get(operation);
+        synchronized (counts) {
+            counts.computeIfAbsent(status, key -> new LongAdder()).increment();
+        }
+    }
+
+    private synchronized void writeIntervals(Map<O, HistogramLogWriter> writers) {
+        writers.forEach((operation, writer) -> {
+            Histogram interval = recorders.get(operation).getIntervalHistogram();
+            totals.get(operation).add(interval);
+            writer.outputIntervalHistogram(interval);
+        });
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    interface ResponseHandler<O> {
+        void handle(O operation, HttpResponse<String> response);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.stockp.load;
+
+import com.example.stockp.EndToEndTest;
+import com.example.stockp.service.StockBatchService;
+import com.example.stockp.service.dto.BatchResultDto;
+import com.example.stockp.service.dto.StockDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load test of /api/stocks: the application on H2 with load.dataset-size stocks, mixed traffic at a fixed rate (open loop).
+ * It is not a part of the build, run it by:
+ * mvn test -Dtest=StockLoadTest -Dload.enabled=true -Dload.rate=500 -Dload.duration-seconds=60
+ * p50, p99, p99.9 and max of every operation are printed and written to target/load/{time of the run}:
+ * summary.txt, operation.hgrm (percentile distribution, for the HdrHistogram plotter) and operation.hlog (interval histograms).
+ * Compare two runs by their .hgrm files, or process the .hlog files by HistogramLogProcessor.
+ */
+@EndToEndTest
+@EnabledIfSystemProperty(named = "load.enabled", matches = "true")
+@TestPropertySource(properties = {"import.path=", "logging.level.com.example=INFO"})
+class StockLoadTest {
+
+    /**
+     * Operations of the traffic, load.mix gives their weights.
+     */
+    enum Operation {
+        GET, PAGE, POST, PUT, PATCH, DELETE
+    }
+
+    private static final String ENTITY_API_URL = "/api/stocks";
+
+    private final Logger log = LoggerFactory.getLogger(StockLoadTest.class);
+
+    private final int datasetSize = Integer.getInteger("load.dataset-size", 10_000);
+    private final int rate = Integer.getInteger("load.rate", 200);
+    private final int warmupSeconds = Integer.getInteger("load.warmup-seconds", 5);
+    private final int durationSeconds = Integer.getInteger("load.duration-seconds", 30);
+    private final long seed = Long.getLong("load.seed", 42);
+    private final String mix = System.getProperty("load.mix", "GET=60,PAGE=10,POST=10,PUT=10,PATCH=5,DELETE=5");
+    private final String outputDirectory = System.getProperty("load.output-directory", "target/load");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private StockBatchService stockBatchService;
+
+    private final AtomicLong createdCount = new AtomicLong();
+
+    private final Queue<Long> createdIds = new ConcurrentLinkedQueue<>(); // stocks created by the load, DELETE removes them
+
+    private final SplittableRandom random = new SplittableRandom(seed);
+
+    private List<StockDto> dataset;
+
+    @Test
+    void shouldReportLatencyPercentilesPerOperation_whenMixedTrafficIsSentAtAFixedRate() throws Exception {
+        dataset = seed();
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+        OpenLoopLoad<Operation> load = new OpenLoopLoad<>(httpClient, Operation.class);
+        Iterator<Operation> operations = operations(parseMix(mix));
+        Path directory = Paths.get(outputDirectory, new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()));
+
+        log.info("#Load warm-up. rate: {}/s, seconds: {}", rate, warmupSeconds);
+        load.run(rate, warmupSeconds * 1000L, operations, this::request, this::handle, false);
+        log.info("#Load run. rate: {}/s, seconds: {}, mix: {}", rate, durationSeconds, mix);
+        load.runAndLog(rate, durationSeconds * 1000L, operations, this::request, this::handle, directory, 1000);
+
+        String settings = String.format("dataset-size: %d, rate: %d/s, duration: %ds, warm-up: %ds, mix: %s, seed: %d",
+                datasetSize, rate, durationSeconds, warmupSeconds, mix, seed);
+        log.info("#Load result in {}{}{}", directory.toAbsolutePath(), System.lineSeparator(), load.report(directory, settings));
+
+        assertEquals((long) rate * durationSeconds, load.count());
+        assertEquals(0, load.failures(), "transport errors and 5xx");
+    }
+
+    private List<StockDto> seed() {
+        List<StockDto> stocks = IntStream.range(0, datasetSize)
+                .mapToObj(i -> StockDto.builder().name("Load-" + i).currentPrice(1000L + i).build())
+                .collect(Collectors.toList());
+        List<BatchResultDto> results = stockBatchService.saveAll(stocks, 1000);
+        assertTrue(results.stream().allMatch(result -> result.getErrorCode() == 0), "the dataset is created");
+        return results.stream().map(BatchResultDto::getStock).collect(Collectors.toList());
+    }
+
+    private HttpRequest request(Operation operation) {
+        StockDto stock = dataset.get(random.nextInt(dataset.size()));
+        long price = random.nextLong(1, 100_000);
+        switch (operation) {
+            case GET:
+                return get(ENTITY_API_URL + "/" + stock.getId());
+            case PAGE:
+                return get(ENTITY_API_URL + "?page=" + random.nextInt(Math.max(1, datasetSize / 20)) + "&size=20");
+            case POST:
+                return send("POST", ENTITY_API_URL, "{\"name\":\"Load-new-" + createdCount.incrementAndGet() + "\",\"current_price\":" + price + "}");
+            case PUT:
+                return send("PUT", ENTITY_API_URL + "/" + stock.getId(),
+                        "{\"id\":" + stock.getId() + ",\"name\":\"" + stock.getName() + "\",\"current_price\":" + price + "}");
+            case PATCH:
+                return send("PATCH", ENTITY_API_URL + "/" + stock.getId(), "{\"id\":" + stock.getId() + ",\"current_price\":" + price + "}");
+            default:
+                Long id = createdIds.poll(); // a stock of the dataset is never deleted, the others keep finding it
+                return HttpRequest.newBuilder(uri(ENTITY_API_URL + "/" + (id == null ? Long.MAX_VALUE : id))).DELETE().build();
+        }
+    }
+
+    private void handle(Operation operation, HttpResponse<String> response) {
+        if (operation == Operation.POST && response.statusCode() == 201) {
+            response.headers().firstValue("Location").ifPresent(location -> createdIds.add(Long.valueOf(location.substring(location.lastIndexOf('/') + 1))));
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).GET().header("Accept", "application/json").build();
+    }
+
+    private HttpRequest send(String method, String path, String json) {
+        return HttpRequest.newBuilder(uri(path)).method(method, HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json").header("Accept", "application/json").build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    /**
+     * The operations in a repeatable order: drawn by their weights from a random of load.seed.
+     */
+    private Iterator<Operation> operations(Map<Operation, Integer> weights) {
+        List<Operation> slots = new ArrayList<>();
+        weights.forEach((operation, weight) -> slots.addAll(Collections.nCopies(weight, operation)));
+        SplittableRandom operationRandom = new SplittableRandom(seed);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Operation next() {
+                return slots.get(operationRandom.nextInt(slots.size()));
+            }
+        };
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] weight = part.trim().split("=");
+            weights.put(Operation.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)), Integer.valueOf(weight[1].trim()));
+        }
+        return weights;
+    }
+}
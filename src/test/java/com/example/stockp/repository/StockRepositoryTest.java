@@ -1,7 +1,10 @@
 package com.example.stockp.repository;
 
 import com.example.stockp.StockpApplication;
+import com.example.stockp.config.SqlStatementCounter;
 import com.example.stockp.entity.Stock;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -9,10 +12,14 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManagerFactory;
+
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ThreadLocalRandom;
 
+import static com.example.stockp.SqlStatementCountUtil.countStatements;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -28,6 +35,9 @@ class StockRepositoryTest {
     @Autowired
     private TransactionTemplate transactionTemplate;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Test
     void shouldSaveAndLoadAndDelete() {
         //The first saves a newly created Stock in the database
@@ -109,4 +119,62 @@ class StockRepositoryTest {
         assertEquals(countExpected,countActual-1);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldLoadFromSecondLevelCache_whenStockIsLoadedById() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Stock stockExpected = transactionTemplate.execute((ts) ->
+                repository.save(new Stock("stock-cache-" + ThreadLocalRandom.current().nextInt(1000), 1L)));
+
+        //The first load puts the stock into the second level cache
+        transactionTemplate.execute((ts) -> repository.findById(stockExpected.getId()).get());
+        long hitCountBefore = statistics.getSecondLevelCacheHitCount();
+        //A new transaction has a new persistence context, so the stock must be served by the second level cache
+        Stock stockLoaded = transactionTemplate.execute((ts) -> repository.findById(stockExpected.getId()).get());
+
+        assertEquals(stockExpected.getName(), stockLoaded.getName());
+        assertEquals(hitCountBefore + 1, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    void shouldFindByNaturalName_whenStockIsSaved() {
+        Stock stockExpected = transactionTemplate.execute((ts) ->
+                repository.save(new Stock("stock-natural-" + ThreadLocalRandom.current().nextInt(1000), 1L)));
+
+        Optional<Stock> stockOptional = transactionTemplate.execute((ts) -> repository.findByNaturalName(stockExpected.getName()));
+
+        assertTrue(stockOptional.isPresent());
+        assertEquals(stockExpected.getId(), stockOptional.get().getId());
+        assertFalse(transactionTemplate.execute((ts) -> repository.findByNaturalName("not-existing-stock")).isPresent());
+    }
+
+    @Test
+    void shouldScrollStocksInRangeInOrderOfId_whenScrollByIdBetweenIsCalled() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(repository.save(new Stock("stock-scroll-" + i + "-" + ThreadLocalRandom.current().nextInt(1000), 1L)).getId());
+        }
+
+        List<Long> idsActual = new ArrayList<>();
+        repository.scrollByIdBetween(ids.get(1), ids.get(2), 1, stock -> idsActual.add(stock.getId()));
+
+        assertEquals(ids.subList(1, 3), idsActual);
+    }
+
+    @Test
+    void shouldLoadFromSecondLevelCacheWithoutSelect_whenStocksAreLoadedByIds() throws Throwable {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(repository.save(new Stock("stock-multi-" + i + "-" + ThreadLocalRandom.current().nextInt(1000), 1L)).getId());
+        }
+        //The first load puts the stocks into the second level cache
+        transactionTemplate.execute((ts) -> repository.findAllByIdInOrder(ids, 100));
+
+        List<List<Stock>> stocksLoaded = new ArrayList<>();
+        SqlStatementCounter.Counts counts = countStatements(() ->
+                stocksLoaded.add(transactionTemplate.execute((ts) -> repository.findAllByIdInOrder(ids, 100))));
+
+        assertEquals(0, counts.get(SqlStatementCounter.Type.SELECT), counts.toString());
+        assertEquals(ids.get(2), stocksLoaded.get(0).get(2).getId());
+    }
+}
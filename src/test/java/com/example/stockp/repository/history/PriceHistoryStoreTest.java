@@ -0,0 +1,118 @@
+package com.example.stockp.repository.history;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PriceHistoryStoreTest {
+
+    private static final int RECORDS_PER_SEGMENT = 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldFindPricesOfTheStockInRange_whenPricesAreAppended() throws IOException {
+        PriceHistoryStore store = openStore(24);
+        store.append(1L, new Date(1000), 10L);
+        store.append(2L, new Date(1500), 99L);
+        store.append(1L, new Date(2000), 20L);
+        store.append(1L, new Date(3000), null);
+
+        List<PricePoint> points = store.find(1L, new Date(1500), new Date(3000), 100);
+
+        assertEquals(2, points.size());
+        assertEquals(20L, points.get(0).getPrice());
+        assertEquals(new Date(2000), points.get(0).getTimestamp());
+        assertNull(points.get(1).getPrice());
+        assertEquals(1, store.find(1L, new Date(0), new Date(5000), 1).size());
+    }
+
+    @Test
+    void shouldRollOverAndRecover_whenSegmentIsFullAndStoreIsOpenedAgain() throws IOException {
+        PriceHistoryStore store = openStore(24);
+        for (int i = 0; i < 10; i++) {
+            store.append(1L, new Date(i), (long) i);
+        }
+        store.close();
+        assertEquals(3, segmentFiles().size());
+
+        PriceHistoryStore reopened = openStore(24);
+        reopened.append(1L, new Date(10), 10L);
+
+        List<PricePoint> points = reopened.find(1L, new Date(0), new Date(100), 100);
+        assertEquals(11, points.size());
+        assertEquals(10L, points.get(10).getPrice());
+    }
+
+    @Test
+    void shouldFindTheOldestPricesInOrder_whenCommitsAreAppendedOutOfOrderAcrossSegments() throws IOException {
+        PriceHistoryStore store = openStore(24);
+        long[] times = {1000, 3000, 2000, 4000, 5000, 6000, 1500, 7000, 8000, 9000}; // 5 segments, 2000 and 1500 came late
+        for (long time : times) {
+            store.append(1L, new Date(time), time);
+            store.append(2L, new Date(time), -time);
+        }
+
+        List<Long> prices = store.find(1L, new Date(0), new Date(10000), 4).stream().map(PricePoint::getPrice).collect(Collectors.toList());
+        assertEquals(List.of(1000L, 1500L, 2000L, 3000L), prices);
+        prices = store.find(1L, new Date(3000), new Date(8000), 3).stream().map(PricePoint::getPrice).collect(Collectors.toList());
+        assertEquals(List.of(3000L, 4000L, 5000L), prices);
+        assertEquals(10, store.find(1L, new Date(0), new Date(10000), 100).size());
+    }
+
+    @Test
+    void shouldDropTheTornRecord_whenStoreIsOpenedAfterACrash() throws IOException {
+        PriceHistoryStore store = openStore(24);
+        store.append(1L, new Date(1000), 10L);
+        store.append(1L, new Date(2000), 20L);
+        store.close();
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+            file.seek(PriceHistorySegment.RECORD_SIZE + 16); // the price of the second record, its checksum does not match anymore
+            file.writeLong(21L);
+        }
+
+        PriceHistoryStore reopened = openStore(24);
+        reopened.append(1L, new Date(3000), 30L);
+
+        List<PricePoint> points = reopened.find(1L, new Date(0), new Date(5000), 100);
+        assertEquals(List.of(10L, 30L), points.stream().map(PricePoint::getPrice).collect(Collectors.toList()));
+    }
+
+    @Test
+    void shouldDeleteExpiredSegmentsButTheActiveOne_whenRetentionIsApplied() throws IOException {
+        PriceHistoryStore store = openStore(1);
+        for (int i = 0; i < 2 * RECORDS_PER_SEGMENT; i++) {
+            store.append(1L, new Date(i), (long) i); // 1970, older than the retention
+        }
+        store.append(1L, new Date(), 100L);
+
+        store.applyRetention();
+
+        assertEquals(1, segmentFiles().size());
+        assertEquals(1, store.find(1L, new Date(0), new Date(), 100).size());
+    }
+
+    private PriceHistoryStore openStore(long retentionHours) throws IOException {
+        PriceHistoryStore store = new PriceHistoryStore(directory.toString(), RECORDS_PER_SEGMENT * PriceHistorySegment.RECORD_SIZE, retentionHours);
+        store.open();
+        return store;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.sorted().collect(Collectors.toList());
+        }
+    }
+}
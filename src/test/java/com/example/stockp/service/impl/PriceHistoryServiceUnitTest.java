@@ -0,0 +1,42 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.repository.history.PriceHistoryStore;
+import com.example.stockp.service.dto.KeysetSliceDto;
+import com.example.stockp.service.dto.PricePointDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PriceHistoryServiceUnitTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldTellWhereTheNextPricesStart_whenHistoryIsLongerThanMaxPoints() throws IOException {
+        PriceHistoryStore store = new PriceHistoryStore(directory.toString(), 1024, 1);
+        store.open();
+        for (int i = 0; i < 5; i++) {
+            store.append(1L, new Date(1000L * i), (long) i);
+        }
+        PriceHistoryServiceImpl service = new PriceHistoryServiceImpl(store, 3);
+
+        KeysetSliceDto<PricePointDto> first = service.findHistory(1L, null, new Date(10_000));
+        assertEquals(3, first.getContent().size());
+        assertEquals("1970-01-01T00:00:03Z", first.getNextCursor());
+
+        KeysetSliceDto<PricePointDto> next = service.findHistory(1L, Date.from(Instant.parse(first.getNextCursor())), new Date(10_000));
+        assertEquals(2, next.getContent().size());
+        assertEquals(3L, next.getContent().get(0).getPrice());
+        assertNull(next.getNextCursor());
+        assertFalse(service.findHistory(1L, null, new Date(2000)).hasNext());
+    }
+}
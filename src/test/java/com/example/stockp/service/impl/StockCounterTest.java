@@ -0,0 +1,96 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.StockpApplication;
+import com.example.stockp.entity.Stock;
+import com.example.stockp.repository.StockRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(classes = StockpApplication.class)
+class StockCounterTest {
+
+    @Autowired
+    private StockCounter stockCounter;
+
+    @Autowired
+    private StockRepository repository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void reconcile() {
+        stockCounter.reconcile();
+    }
+
+    @Test
+    void shouldCountInsertAndDelete_whenTransactionIsCommitted() {
+        long totalBefore = stockCounter.total();
+
+        Stock stock = transactionTemplate.execute((ts) -> repository.save(new Stock("stock-counter-" + ThreadLocalRandom.current().nextInt(100000), 1L)));
+        assertEquals(totalBefore + 1, stockCounter.total());
+        assertEquals(repository.count(), stockCounter.total());
+
+        transactionTemplate.execute((ts) -> {
+            repository.deleteById(stock.getId());
+            return null;
+        });
+        assertEquals(totalBefore, stockCounter.total());
+    }
+
+    @Test
+    void shouldSeeItsOwnInsertAndForgetIt_whenTransactionIsRolledBack() {
+        long totalBefore = stockCounter.total();
+
+        transactionTemplate.execute((ts) -> {
+            repository.saveAndFlush(new Stock("stock-counter-" + ThreadLocalRandom.current().nextInt(100000), 1L));
+            assertEquals(totalBefore + 1, stockCounter.total()); // the transaction sees its own insert
+            ts.setRollbackOnly();
+            return null;
+        });
+
+        assertEquals(totalBefore, stockCounter.total());
+    }
+
+    @Test
+    void shouldNotCountInsertOfAnotherTransaction_whenItIsNotCommitted() throws Exception {
+        long totalBefore = stockCounter.total();
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch counted = new CountDownLatch(1);
+
+        CompletableFuture<Void> other = CompletableFuture.runAsync(() -> transactionTemplate.execute((ts) -> {
+            repository.saveAndFlush(new Stock("stock-counter-" + ThreadLocalRandom.current().nextInt(100000), 1L));
+            inserted.countDown();
+            await(counted);
+            ts.setRollbackOnly();
+            return null;
+        }));
+        try {
+            assertTrue(inserted.await(5, TimeUnit.SECONDS));
+            assertEquals(totalBefore, stockCounter.total());
+        } finally {
+            counted.countDown();
+        }
+        other.get(5, TimeUnit.SECONDS);
+        assertEquals(totalBefore, stockCounter.total());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.stockp.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockIdBloomFilterTest {
+
+    @Test
+    void shouldFindEveryPutIdAndFewOthers_whenFilterIsFull() {
+        StockIdBloomFilter filter = new StockIdBloomFilter(10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) filter.put(id);
+
+        for (long id = 1; id <= 10_000; id++) assertTrue(filter.mightContain(id), "id: " + id);
+        long falsePositives = 0;
+        for (long id = 10_001; id <= 110_000; id++) if (filter.mightContain(id)) falsePositives++;
+        assertThat(falsePositives).as("false positives of 100000 missing ids").isLessThan(2_000);
+    }
+
+    @Test
+    void shouldFindNothing_whenFilterIsEmpty() {
+        StockIdBloomFilter filter = new StockIdBloomFilter(1_000, 0.01);
+
+        for (long id = 1; id <= 1_000; id++) assertThat(filter.mightContain(id)).isFalse();
+    }
+}
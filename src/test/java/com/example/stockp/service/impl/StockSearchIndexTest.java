@@ -0,0 +1,63 @@
+package com.example.stockp.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StockSearchIndexTest {
+
+    private StockSearchIndex index;
+
+    @BeforeEach
+    void fillIndex() {
+        index = new StockSearchIndex();
+        index.put(1, "Apple");
+        index.put(2, "Applied Materials");
+        index.put(3, "Amazon");
+        index.put(4, "Alphabet");
+        index.put(5, "Microsoft");
+    }
+
+    @Test
+    void shouldReturnNamesOfPrefixInOrderOfName_whenSearchIsCalled() {
+        List<StockSearchIndex.Match> matches = index.search("APP", 10, 0.9, 100);
+
+        assertEquals(List.of("Apple", "Applied Materials"), names(matches));
+        assertEquals(StockSearchIndex.PREFIX, matches.get(0).getType());
+    }
+
+    @Test
+    void shouldReturnSimilarNames_whenQueryHasATypo() {
+        List<StockSearchIndex.Match> matches = index.search("Micorsoft", 10, 0.3, 100);
+
+        assertEquals(List.of("Microsoft"), names(matches));
+        assertEquals(StockSearchIndex.FUZZY, matches.get(0).getType());
+        assertThat(matches.get(0).getScore()).isBetween(0.3, 1.0);
+    }
+
+    @Test
+    void shouldReturnPrefixMatchesBeforeSimilarNames_andAtMostLimit() {
+        List<StockSearchIndex.Match> matches = index.search("Amaz", 10, 0.1, 100);
+
+        assertEquals("Amazon", matches.get(0).getName());
+        assertEquals(1, index.search("A", 1, 0.1, 100).size());
+    }
+
+    @Test
+    void shouldFindNewNameOnly_whenStockIsRenamedOrRemoved() {
+        index.put(1, "Apricot");
+        index.remove(2);
+
+        assertEquals(List.of("Apricot"), names(index.search("ap", 10, 0.9, 100)));
+        assertEquals(4, index.size());
+    }
+
+    private static List<String> names(List<StockSearchIndex.Match> matches) {
+        return matches.stream().map(StockSearchIndex.Match::getName).collect(Collectors.toList());
+    }
+}
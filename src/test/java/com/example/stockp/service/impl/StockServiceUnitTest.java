@@ -3,6 +3,7 @@ package com.example.stockp.service.impl;
 import antlr.Utils;
 import com.example.stockp.entity.Stock;
 import com.example.stockp.exception.BadRequestException;
+import com.example.stockp.exception.PreconditionFailedException;
 import com.example.stockp.exception.StockNotFoundException;
 import com.example.stockp.repository.StockRepository;
 import com.example.stockp.service.StockService;
@@ -16,10 +17,13 @@ import org.mapstruct.factory.Mappers;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -41,16 +45,23 @@ class StockServiceUnitTest {
     @Mock
     StockRepository repository;
 
+    @Mock
+    StockCounter counter;
+
     @Captor
     ArgumentCaptor<Stock> captor;//You should call it during the verification phase of the test.
 
+    StockNameIndex nameIndex = new StockNameIndex(null); // its listeners are not registered, the test fills it
+
+    StockIdFilter idFilter = new StockIdFilter(null, null, true, 100, 0.01, 100, 60000, 5000, 60000); // it is not built, every id might exist
+
     @Spy
     StockMapper mapper = Mappers.getMapper(StockMapper.class);
 
 
     @BeforeEach
     void initializeService() {
-        service = new StockServiceImpl(repository, mapper);
+        service = new StockServiceImpl(repository, mapper, counter, nameIndex, idFilter, 3, 100);
     }
 
 
@@ -103,15 +114,17 @@ class StockServiceUnitTest {
         stockEntityExpected.setId(1L);
         StockDto stockDtoExpected = mapper.toDto(stockEntityExpected);
 
-        // Arrange stub save method. It must return given entity.
-        when(repository.existsById(1L)).thenReturn(true);
-        when(repository.save(ArgumentMatchers.any(Stock.class))).thenReturn(stockEntityExpected);
+        // Arrange stub findById method. It must return given entity.
+        when(repository.findById(1L)).thenReturn(Optional.of(stockEntityExpected));
 
         // Act
         StockDto stockDtoActual = service.update(stockDtoExpected);
 
-        //to verify if the save() method of the mocked repository has been called.
-        verify(repository, times(1)).save(ArgumentMatchers.any(Stock.class));
+        //the loaded entity is written by dirty checking, neither an exists query nor a merge is needed
+        verify(repository, times(1)).findById(1L);
+        verify(repository, times(1)).flush();
+        verify(repository, never()).existsById(ArgumentMatchers.anyLong());
+        verify(repository, never()).save(ArgumentMatchers.any(Stock.class));
 
         // Assert
         assertEquals(stockDtoActual.getId(), stockEntityExpected.getId());
@@ -155,18 +168,45 @@ class StockServiceUnitTest {
         List<StockDto> stockDtoListExpected=List.of(stockDtoExpected1,stockDtoExpected2,stockDtoExpected3);
         List<Stock> stockListExpected=List.of(stockEntityExpected1,stockEntityExpected2,stockEntityExpected3);
         // Arrange stub save method. It must return given entity.
-        Pageable pageable= PageRequest.of(0,10);
-        Page<Stock> postPage = new PageImpl<>(stockListExpected);
-        when(repository.findAll(pageable)).thenReturn(postPage);
+        Pageable pageable= PageRequest.of(0,2);
+        Slice<Stock> stockSlice = new SliceImpl<>(stockListExpected.subList(0, 2), pageable, true);
+        when(repository.findSliceBy(pageable)).thenReturn(stockSlice);
+        when(counter.total()).thenReturn(3L);
 
         // Act
-        List<StockDto> stockDtoListActual = service.findAll(pageable).getContent();
+        Page<StockDto> stockDtoPageActual = service.findAll(pageable);
 
-        //to verify if the save() method of the mocked repository has been called.
-        verify(repository, times(1)).findAll(pageable) ;
+        //the total comes from the counter, the database must not be counted.
+        verify(repository, times(1)).findSliceBy(pageable);
+        verify(repository, never()).findAll(ArgumentMatchers.any(Pageable.class));
+        verify(repository, never()).count();
 
         // Assert
-        assertThat(stockDtoListActual).hasSameElementsAs(stockDtoListExpected);
+        assertThat(stockDtoPageActual.getContent()).hasSameElementsAs(stockDtoListExpected.subList(0, 2));
+        assertEquals(3L, stockDtoPageActual.getTotalElements());
+        assertEquals(2, stockDtoPageActual.getTotalPages());
+    }
+
+    @Test
+    void shouldFindStocksInOrderOfIdsWithoutMissingOnes_whenFindAllByIdIsCalled() {
+        Stock stock1 = new Stock("Stock1", 1L);
+        Stock stock2 = new Stock("Stock2", 2L);
+        stock1.setId(100L);
+        stock2.setId(101L);
+        when(repository.findAllByIdInOrder(List.of(101L, 999L, 100L), 100)).thenReturn(Arrays.asList(stock2, null, stock1));
+
+        // the repeated id is asked once
+        List<StockDto> stockDtos = service.findAllById(List.of(101L, 999L, 100L, 101L));
+
+        assertThat(stockDtos).extracting(StockDto::getId).containsExactly(101L, 100L);
+    }
+
+    @Test
+    void shouldThrowBadRequestException_whenIdsOfFindAllByIdAreEmptyOrTooMany() {
+        Assertions.assertThrows(BadRequestException.class, () -> service.findAllById(List.of()));
+        Assertions.assertThrows(BadRequestException.class, () -> service.findAllById(List.of(1L, 2L, 3L, 4L)));
+        Assertions.assertThrows(BadRequestException.class, () -> service.findAllById(Arrays.asList(1L, null)));
+        verifyNoInteractions(repository);
     }
 
     @Test
@@ -192,20 +232,99 @@ class StockServiceUnitTest {
         stockEntityExpected.setId(1L);
         StockDto stockDtoExpected = mapper.toDto(stockEntityExpected);
 
-        // Arrange stub save method. It must return given entity.
-        when(repository.existsById(1L)).thenReturn(true);
+        // Arrange stub findById method. It must return given entity.
         when(repository.findById(1L)).thenReturn(Optional.of(stockEntityExpected));
-        when(repository.save(ArgumentMatchers.any(Stock.class))).thenReturn(stockEntityExpected);
 
         // Act
         StockDto stockDtoActual = service.partialUpdate(stockDtoExpected);
 
-        //to verify if the save() method of the mocked repository has been called.
-        verify(repository, times(1)).save(ArgumentMatchers.any(Stock.class));
+        //the loaded entity is written by dirty checking, neither an exists query nor a merge is needed
+        verify(repository, times(1)).findById(1L);
+        verify(repository, times(1)).flush();
+        verify(repository, never()).existsById(ArgumentMatchers.anyLong());
+        verify(repository, never()).save(ArgumentMatchers.any(Stock.class));
 
         // Assert
         assertEquals(stockDtoActual.getId(), stockEntityExpected.getId());
         assertEquals(stockDtoActual.getName(), stockEntityExpected.getName());
         assertEquals(stockDtoActual.getCurrentPrice(), stockEntityExpected.getCurrentPrice());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldThrowBadRequestException_whenStockOfPartialUpdateIsNotExist() {
+        StockDto stockDto = StockDto.builder().id(1L).currentPrice(2L).build();
+        when(repository.findById(1L)).thenReturn(Optional.empty());
+
+        BadRequestException thrown = Assertions.assertThrows(BadRequestException.class, () -> service.partialUpdate(stockDto));
+
+        assertTrue(thrown.getMessage().contains("Entity not found"));
+        verify(repository, never()).flush();
+    }
+
+    @Test
+    void shouldThrowPreconditionFailedException_whenVersionOfIfMatchIsNotTheCurrentVersion() {
+        Stock stock = new Stock("Stock1", 1L);
+        stock.setId(1L);
+        stock.setVersion(3L);
+        when(repository.findById(1L)).thenReturn(Optional.of(stock));
+
+        StockDto stockDto = StockDto.builder().id(1L).currentPrice(2L).build();
+        PreconditionFailedException thrown = Assertions.assertThrows(PreconditionFailedException.class, () -> service.partialUpdate(stockDto, 2L));
+
+        assertEquals(4120, thrown.getErrorCode());
+        assertEquals(1L, stock.getCurrentPrice()); // nothing is changed
+        verify(repository, never()).flush();
+    }
+
+    @Test
+    void shouldThrowPreconditionFailedException_whenConditionalUpdateUpdatesNoRow() {
+        Stock stock = new Stock("Stock1", 1L);
+        stock.setId(1L);
+        stock.setVersion(3L);
+        when(repository.findById(1L)).thenReturn(Optional.of(stock));
+        doThrow(new ObjectOptimisticLockingFailureException(Stock.class, 1L)).when(repository).flush();
+
+        StockDto stockDto = StockDto.builder().id(1L).name("Stock1").currentPrice(2L).build();
+
+        Assertions.assertThrows(PreconditionFailedException.class, () -> service.update(stockDto, 3L));
+        // without If-Match the conflict is not a failed precondition
+        Assertions.assertThrows(ObjectOptimisticLockingFailureException.class, () -> service.update(stockDto));
+    }
+
+    @Test
+    void shouldFindStockByIdOfNameIndex_whenFindByNameIsCalled() {
+        Stock stock = new Stock("Stock1", 1L);
+        stock.setId(7L);
+        nameIndex.put("Stock1", 7L);
+        when(repository.findById(7L)).thenReturn(Optional.of(stock));
+
+        StockDto stockDto = service.findByName("Stock1");
+
+        assertEquals(7L, stockDto.getId());
+        verify(repository, never()).findByNaturalName(ArgumentMatchers.anyString());
+    }
+
+    @Test
+    void shouldResolveNameByNaturalId_whenNameIndexIsStale() {
+        Stock renamed = new Stock("Stock2", 1L);
+        renamed.setId(7L);
+        Stock stock = new Stock("Stock1", 1L);
+        stock.setId(8L);
+        nameIndex.put("Stock1", 7L); // Stock1 was renamed to Stock2 by another instance
+        when(repository.findById(7L)).thenReturn(Optional.of(renamed));
+        when(repository.findByNaturalName("Stock1")).thenReturn(Optional.of(stock));
+
+        StockDto stockDto = service.findByName("Stock1");
+
+        assertEquals(8L, stockDto.getId());
+        assertEquals(8L, nameIndex.get("Stock1"));
+    }
+
+    @Test
+    void shouldReturnStockNotFoundException_whenFindByNameIsCalledWithUnknownName() {
+        when(repository.findByNaturalName("Unknown")).thenReturn(Optional.empty());
+
+        Assertions.assertThrows(StockNotFoundException.class, () -> service.findByName("Unknown"));
+        assertEquals(null, nameIndex.get("Unknown"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.entity.Stock;
+import com.example.stockp.repository.StockRepository;
+import com.example.stockp.service.mapper.StockMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+
+class StockStreamServiceUnitTest {
+
+    private static final int SENDER_THREADS = 1;
+
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    private StockStreamServiceImpl service;
+
+    @BeforeEach
+    void initializeService() {
+        service = new StockStreamServiceImpl(null, mock(StockRepository.class), Mappers.getMapper(StockMapper.class), new ObjectMapper(),
+                StockStreamServiceImpl.Policy.CONFLATE, 256, 1000, 60000, SENDER_THREADS, 50);
+    }
+
+    @AfterEach
+    void shutdown() {
+        unblock.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void shouldDeliverToOtherSubscribers_whenSubscribersDoNotReadAndHoldEverySenderThread() throws Exception {
+        AtomicInteger blockedWrites = new AtomicInteger();
+        for (int i = 0; i < SENDER_THREADS + 2; i++) {
+            service.register(new SseEmitter(60000L) {
+                @Override
+                public void send(SseEventBuilder builder) throws IOException {
+                    blockedWrites.incrementAndGet();
+                    try {
+                        unblock.await(); // a client that does not read, the socket buffer is full
+                    } catch (InterruptedException ex) {
+                        throw new IOException(ex);
+                    }
+                }
+            }, Set.of(1L));
+        }
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        service.register(new SseEmitter(60000L) {
+            @Override
+            public void send(SseEventBuilder builder) {
+                received.add(builder.build().stream().map(data -> data.getData().toString()).collect(Collectors.joining()));
+            }
+        }, Set.of(1L));
+
+        Stock stock = new Stock("Stock1", 10L);
+        stock.setId(1L);
+        service.onPostInsert(new PostInsertEvent(stock, 1L, null, null, null));
+        awaitReceived(received, "\"current_price\":10");
+
+        Thread.sleep(100); // longer than the write timeout
+        service.heartbeat(); // the blocked subscribers are dropped
+        stock.setCurrentPrice(20L);
+        service.onPostInsert(new PostInsertEvent(stock, 1L, null, null, null));
+        awaitReceived(received, "\"current_price\":20");
+        assertEquals(SENDER_THREADS + 2, blockedWrites.get()); // nothing more is offered to a dropped subscriber
+    }
+
+    private void awaitReceived(BlockingQueue<String> received, String expected) throws InterruptedException {
+        String event;
+        do {
+            event = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "Subscriber does not get: " + expected);
+        } while (!event.contains(expected)); // heartbeats come in between
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.stockp.service.impl;
+
+import com.example.stockp.entity.Stock;
+import com.example.stockp.exception.BadRequestException;
+import com.example.stockp.exception.TooManyRequestsException;
+import com.example.stockp.repository.StockRepository;
+import com.example.stockp.service.StockTickService;
+import com.example.stockp.service.dto.TickDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockTickServiceUnitTest {
+
+    StockTickService service;
+
+    @Mock
+    StockRepository repository;
+
+    @Mock
+    TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void initializeService() {
+        service = new StockTickServiceImpl(repository, transactionTemplate, 1000, 10, 100, 1000);
+    }
+
+    @Test
+    void shouldWriteOnlyTheLatestTickOfEachStock_whenFlushIsCalled() {
+        Stock stock1 = new Stock("Stock1", 1L);
+        stock1.setId(1L);
+        Stock stock2 = new Stock("Stock2", 1L);
+        stock2.setId(2L);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        when(repository.findAllById(List.of(1L))).thenReturn(List.of(stock1));
+        when(repository.findByNameIn(List.of("Stock2"))).thenReturn(List.of(stock2));
+
+        service.accept(List.of(
+                TickDto.builder().id(1L).price(30L).timestamp(new Date(3000)).build(),
+                TickDto.builder().id(1L).price(10L).timestamp(new Date(1000)).build(), // arrived late, it is older
+                TickDto.builder().name("Stock2").price(20L).timestamp(new Date(2000)).build()));
+        service.accept(List.of(TickDto.builder().name("Stock2").price(40L).timestamp(new Date(4000)).build()));
+
+        assertEquals(2, service.flush());
+        assertEquals(30L, stock1.getCurrentPrice());
+        assertEquals(40L, stock2.getCurrentPrice());
+        verify(transactionTemplate, times(1)).execute(any());
+
+        assertEquals(0, service.flush()); // the buffer is drained
+        verifyNoMoreInteractions(transactionTemplate);
+    }
+
+    @Test
+    void shouldThrowTooManyRequestsException_whenBufferIsFull() {
+        service = new StockTickServiceImpl(repository, transactionTemplate, 1000, 2, 100, 1000);
+        service.accept(List.of(TickDto.builder().id(1L).price(1L).build(), TickDto.builder().id(2L).price(1L).build()));
+
+        assertThrows(TooManyRequestsException.class, () -> service.accept(List.of(TickDto.builder().id(3L).price(1L).build())));
+    }
+
+    @Test
+    void shouldReserveOnePlacePerStock_whenTicksAreAccepted() {
+        service = new StockTickServiceImpl(repository, transactionTemplate, 1000, 3, 100, 1000);
+        service.accept(List.of(TickDto.builder().id(1L).price(1L).build(), TickDto.builder().id(2L).price(1L).build()));
+
+        // ticks of one stock take one place
+        assertEquals(2, service.accept(List.of(TickDto.builder().id(3L).price(1L).build(), TickDto.builder().id(3L).price(2L).build())));
+        assertThrows(TooManyRequestsException.class, () -> service.accept(List.of(TickDto.builder().id(4L).price(1L).build())));
+    }
+
+    @Test
+    void shouldDropTickAndKeepNewerPrice_whenTickIsOlderThanLastUpdateOfStock() {
+        Stock stock = new Stock("Stock1", 50L);
+        stock.setId(1L);
+        stock.setLastUpdate(new Date(5000)); // committed after the tick was made
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        when(repository.findAllById(List.of(1L))).thenReturn(List.of(stock));
+
+        service.accept(List.of(TickDto.builder().id(1L).price(10L).timestamp(new Date(4000)).build()));
+        assertEquals(0, service.flush());
+        assertEquals(50L, stock.getCurrentPrice());
+
+        service.accept(List.of(TickDto.builder().id(1L).price(60L).timestamp(new Date(6000)).build()));
+        assertEquals(1, service.flush());
+        assertEquals(60L, stock.getCurrentPrice());
+        assertEquals(new Date(6000), stock.getLastUpdate()); // the time of the tick
+    }
+
+    @Test
+    void shouldThrowBadRequestException_whenTickIsLaterThanNowPlusClockSkew() {
+        long now = System.currentTimeMillis();
+        assertEquals(1, service.accept(List.of(TickDto.builder().id(1L).price(1L).timestamp(new Date(now + 500)).build()))); // within the skew
+
+        assertThrows(BadRequestException.class,
+                () -> service.accept(List.of(TickDto.builder().id(2L).price(1L).timestamp(new Date(now + 60000)).build())));
+    }
+
+    @Test
+    void shouldThrowBadRequestException_whenTickHasNoPrice() {
+        assertThrows(BadRequestException.class, () -> service.accept(List.of(TickDto.builder().id(1L).build())));
+        verifyNoInteractions(repository);
+    }
+}